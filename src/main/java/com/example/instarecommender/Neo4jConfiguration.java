@@ -1,6 +1,9 @@
 package com.example.instarecommender;
 
+import java.util.concurrent.TimeUnit;
+
 import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Config;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.GraphDatabase;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,16 +12,42 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class Neo4jConfiguration {
-    
+
     @Value("${spring.neo4j.authentication.password}")
     private String password;
     @Value("${spring.neo4j.uri}")
     private String uri;
+
+    // Sessions are cheap and borrow a pooled connection per transaction; these bound the pool
+    @Value("${app.neo4j.pool.max-size:100}")
+    private int maxPoolSize;
+    @Value("${app.neo4j.pool.acquisition-timeout-ms:60000}")
+    private long acquisitionTimeoutMs;
+    @Value("${app.neo4j.pool.max-lifetime-ms:3600000}")
+    private long maxLifetimeMs;
+    // Idle connections older than this are pinged before reuse (-1 disables the check)
+    @Value("${app.neo4j.pool.liveness-check-timeout-ms:-1}")
+    private long livenessCheckTimeoutMs;
+    @Value("${app.neo4j.connection-timeout-ms:30000}")
+    private long connectionTimeoutMs;
+    @Value("${app.neo4j.fetch-size:1000}")
+    private long fetchSize;
+
     @Bean
     public Driver neo4jDriver() {
+        Config.ConfigBuilder config = Config.builder()
+            .withMaxConnectionPoolSize(maxPoolSize)
+            .withConnectionAcquisitionTimeout(acquisitionTimeoutMs, TimeUnit.MILLISECONDS)
+            .withMaxConnectionLifetime(maxLifetimeMs, TimeUnit.MILLISECONDS)
+            .withConnectionTimeout(connectionTimeoutMs, TimeUnit.MILLISECONDS)
+            .withFetchSize(fetchSize);
+        if (livenessCheckTimeoutMs >= 0) {
+            config.withConnectionLivenessCheckTimeout(livenessCheckTimeoutMs, TimeUnit.MILLISECONDS);
+        }
         return GraphDatabase.driver(
             uri,
-            AuthTokens.basic("neo4j", password)
+            AuthTokens.basic("neo4j", password),
+            config.build()
         );
 
     }
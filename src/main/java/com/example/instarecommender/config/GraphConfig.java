@@ -1,26 +1,69 @@
 package com.example.instarecommender.config;
 
+import com.example.instarecommender.repositories.CsrGraphRepository;
+import com.example.instarecommender.repositories.GdsProjectionManager;
 import com.example.instarecommender.repositories.GraphRepository;
+import com.example.instarecommender.repositories.HybridGraphRepository;
 import com.example.instarecommender.repositories.InMemoryGraphRepository;
 import com.example.instarecommender.repositories.Neo4jGraphRepository;
+import com.example.instarecommender.repositories.TimedGraphRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import org.neo4j.driver.Driver;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
 public class GraphConfig {
 
+    @Bean
+    @Profile("neo4j")
+    public GdsProjectionManager gdsProjectionManager(
+        Driver neo4jDriver,
+        MeterRegistry meterRegistry,
+        @Value("${app.gds.projection.min-interval-ms:10000}") long minIntervalMs,
+        @Value("${app.gds.projection.max-pending-mutations:1000}") int maxPendingMutations,
+        @Value("${app.gds.projection.drop-grace-ms:30000}") long dropGraceMs
+    ) {
+        return new GdsProjectionManager(neo4jDriver, meterRegistry, minIntervalMs, maxPendingMutations, dropGraceMs);
+    }
+
     @Bean
     public GraphRepository graphRepository(
         Driver neo4jDriver,
-        @Value("${app.graph.storage-type}") String storageType
+        ObjectProvider<GdsProjectionManager> gdsProjectionManager,
+        MeterRegistry meterRegistry,
+        @Value("${app.graph.storage-type}") String storageType,
+        @Value("${app.graph.csr.compaction-threshold:4096}") int csrCompactionThreshold,
+        @Value("${app.graph.csr.compaction-interval-ms:1000}") long csrCompactionIntervalMs,
+        @Value("${app.graph.in-memory.publish-interval-ms:200}") long inMemoryPublishIntervalMs,
+        @Value("${app.graph.in-memory.candidate-index.candidates-per-user:256}") int candidatesPerUser,
+        @Value("${app.graph.in-memory.candidate-index.max-bytes:67108864}") long candidateIndexMaxBytes,
+        @Value("${app.graph.in-memory.candidate-index.max-update-work:100000}") long candidateIndexMaxUpdateWork,
+        @Value("${app.graph.hybrid.reconcile-interval-ms:300000}") long hybridReconcileIntervalMs
     ) {
         if ("neo4j".equalsIgnoreCase(storageType)) {
             System.out.println("[INFO] Using Neo4j for graph storage.");
-            return new Neo4jGraphRepository(neo4jDriver);
+            return new TimedGraphRepository(new Neo4jGraphRepository(neo4jDriver, gdsProjectionManager.getObject()), meterRegistry, "neo4j");
+        }
+        if ("hybrid".equalsIgnoreCase(storageType)) {
+            System.out.println("[INFO] Using Neo4j for graph storage with an in-memory CSR replica for reads.");
+            return new TimedGraphRepository(new HybridGraphRepository(
+                new TimedGraphRepository(new Neo4jGraphRepository(neo4jDriver, null), meterRegistry, "neo4j"),
+                () -> new CsrGraphRepository(csrCompactionThreshold, csrCompactionIntervalMs),
+                meterRegistry,
+                hybridReconcileIntervalMs
+            ), meterRegistry, "hybrid");
+        }
+        if ("csr".equalsIgnoreCase(storageType)) {
+            System.out.println("[INFO] Using in-memory CSR store for graph storage.");
+            return new TimedGraphRepository(new CsrGraphRepository(csrCompactionThreshold, csrCompactionIntervalMs), meterRegistry, "csr");
         }
         System.out.println("[INFO] Using in-memory JGraphT for graph storage.");
-        return new InMemoryGraphRepository();
+        return new TimedGraphRepository(new InMemoryGraphRepository(
+            inMemoryPublishIntervalMs, candidatesPerUser, candidateIndexMaxBytes, candidateIndexMaxUpdateWork), meterRegistry, "in-memory");
     }
 }
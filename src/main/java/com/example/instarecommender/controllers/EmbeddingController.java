@@ -0,0 +1,45 @@
+package com.example.instarecommender.controllers;
+
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.instarecommender.recommenders.gnn.EmbeddingTable;
+import com.example.instarecommender.services.GnnEmbeddingService;
+
+@RestController
+@RequestMapping("/api/gnn")
+@Profile("in-memory")
+public class EmbeddingController {
+
+    private final GnnEmbeddingService gnnEmbeddingService;
+
+    public EmbeddingController(GnnEmbeddingService gnnEmbeddingService) {
+        this.gnnEmbeddingService = gnnEmbeddingService;
+    }
+
+    @PostMapping("/refresh")
+    public Map<String, Object> refresh() {
+        return describe(gnnEmbeddingService.refresh());
+    }
+
+    @GetMapping("/embeddings")
+    public Map<String, Object> current() {
+        return describe(gnnEmbeddingService.model());
+    }
+
+    private Map<String, Object> describe(GnnEmbeddingService.Model model) {
+        EmbeddingTable table = model.getTable();
+        return Map.of(
+            "version", table.getVersion(),
+            "users", table.rows(),
+            "dimensions", table.dim(),
+            "ivfLists", model.getIndex().lists(),
+            "computedAt", table.getComputedAt()
+        );
+    }
+}
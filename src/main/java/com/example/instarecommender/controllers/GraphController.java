@@ -1,7 +1,18 @@
 package com.example.instarecommender.controllers;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -10,27 +21,51 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import com.example.instarecommender.models.AlgorithmTypes;
+import com.example.instarecommender.models.BatchRecommendationRequest;
+import com.example.instarecommender.models.BatchRecommendationResult;
 import com.example.instarecommender.models.InteractionDTO;
 import com.example.instarecommender.models.InteractionType;
-import com.example.instarecommender.services.DynamicWeightService;
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.services.BatchRecommendationService;
 import com.example.instarecommender.services.GraphService;
+import com.example.instarecommender.services.InteractionIngestionService;
+import com.example.instarecommender.services.RecommendationCache;
 import com.example.instarecommender.services.RecommenderService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/api")
 public class GraphController {
 
-    private final DynamicWeightService dynamicWeightService;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final InteractionIngestionService ingestionService;
     private final GraphService graphService;
     private final RecommenderService recommenderService;
+    private final RecommendationCache recommendationCache;
+    private final BatchRecommendationService batchRecommendationService;
+    private final ObjectMapper objectMapper;
+    private final int maxLimit;
+    private final long batchTimeoutMs;
 
-    public GraphController(GraphService graphService, RecommenderService recommenderService, DynamicWeightService dynamicWeightService) {
+    public GraphController(GraphService graphService, RecommenderService recommenderService,
+                           InteractionIngestionService ingestionService, RecommendationCache recommendationCache,
+                           BatchRecommendationService batchRecommendationService, ObjectMapper objectMapper,
+                           @Value("${app.recommend.max-limit:1000}") int maxLimit,
+                           @Value("${app.batch.timeout-ms:600000}") long batchTimeoutMs) {
         this.graphService = graphService;
         this.recommenderService = recommenderService;
-        this.dynamicWeightService = dynamicWeightService;
+        this.ingestionService = ingestionService;
+        this.recommendationCache = recommendationCache;
+        this.batchRecommendationService = batchRecommendationService;
+        this.objectMapper = objectMapper;
+        this.maxLimit = maxLimit;
+        this.batchTimeoutMs = batchTimeoutMs;
     }
 
     @PostMapping("/interact")
@@ -45,16 +80,79 @@ public class GraphController {
 
         try {
             InteractionType type = InteractionType.valueOf(typeStr.toUpperCase());
-            dynamicWeightService.updateWeightBasedOnInteraction(from, to, type);
-            return ResponseEntity.ok("Interaction recorded: " + type + " from " + from + " to " + to);
+            // Applied asynchronously in the next flush window
+            if (!ingestionService.submit(from, to, type)) {
+                long retryAfter = Math.max(1, ingestionService.getFlushIntervalMs() / 1000);
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("Interaction queue is full, retry later");
+            }
+            return ResponseEntity.accepted().body("Interaction accepted: " + type + " from " + from + " to " + to);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Invalid interaction type: " + typeStr);
         }
     }
 
+    // A result that is already there (cache hits, in-memory strategies) is written on this thread.
+    // A pending one (a Neo4j query in flight) frees the worker and completes as an async request.
     @GetMapping("/recommend/{user}")
     public Object recommend(@PathVariable String user, @RequestParam AlgorithmTypes algorithm, @RequestParam(defaultValue = "10") int limit) {
-        return recommenderService.recommend(user, algorithm, limit);
+        checkLimit(limit);
+        CompletableFuture<RecommendationResponse> result = recommenderService.recommendAsync(user, algorithm, limit);
+        return result.isDone() && !result.isCompletedExceptionally() ? result.join() : result;
+    }
+
+    // Streams one JSON object per line as chunks finish, so the response never holds the whole batch.
+    // Duplicate users are scored once.
+    @PostMapping(value = "/recommend/batch", produces = "application/x-ndjson")
+    public ResponseEntity<ResponseBodyEmitter> recommendBatch(@RequestBody BatchRecommendationRequest request) {
+        if (request.getAlgorithm() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Missing 'algorithm' field");
+        }
+        checkLimit(request.getLimit());
+        List<String> users = request.isAllUsers() ? batchRecommendationService.allUsers() : request.getUsers();
+        if (users == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provide 'users' or set 'allUsers' to true");
+        }
+        users = new ArrayList<>(new LinkedHashSet<>(users));
+
+        // The batch can outlive the default async timeout, so it gets its own
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs > 0 ? batchTimeoutMs : -1L);
+        batchRecommendationService.recommendAsync(users, request.getAlgorithm(), request.getLimit(), results -> {
+            try {
+                ByteArrayOutputStream lines = new ByteArrayOutputStream();
+                for (BatchRecommendationResult result : results) {
+                    lines.write(objectMapper.writeValueAsBytes(result));
+                    lines.write('\n');
+                }
+                emitter.send(lines.toByteArray(), NDJSON);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((done, failure) -> {
+            if (failure == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(failure);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(emitter);
+    }
+
+    private void checkLimit(int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'limit' must be between 1 and " + maxLimit);
+        }
+    }
+
+    @GetMapping("/recommend/stats")
+    public Map<String, Object> recommendStats() {
+        return recommenderService.getStats();
+    }
+
+    @GetMapping("/recommend/cache/stats")
+    public Map<String, Object> cacheStats() {
+        return recommendationCache.getStats();
     }
 
     @GetMapping("/graph")
@@ -62,6 +160,21 @@ public class GraphController {
         return graphService.getGraph();
     }
 
+    @GetMapping("/graph/stats")
+    public Map<String, Object> graphStats() {
+        return graphService.getStorageStats();
+    }
+
+    @GetMapping("/interact/stats")
+    public Map<String, Object> interactionStats() {
+        return ingestionService.getStats();
+    }
+
+    @GetMapping("/graph/log/stats")
+    public Map<String, Object> mutationLogStats() {
+        return graphService.getMutationLog().getStats();
+    }
+
 
     @PostMapping("/user")
     public ResponseEntity<String> addUser(@RequestParam String name) {
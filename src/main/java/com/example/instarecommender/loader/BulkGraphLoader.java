@@ -0,0 +1,140 @@
+package com.example.instarecommender.loader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.repositories.BulkEdgeWriter;
+import com.example.instarecommender.repositories.GraphRepository;
+
+// Imports an edge list into the configured store. The file is split into chunks that are
+// parsed in parallel, and the parsed rows go to the repository's BulkEdgeWriter in batches
+// of batchSize, which is also the transaction size on Neo4j. Progress is logged periodically.
+@Service
+public class BulkGraphLoader {
+
+    private final GraphRepository graphRepository;
+    private final String path;
+    private final int batchSize;
+    private final int parallelism;
+    private final long chunkBytes;
+    private final long progressIntervalMs;
+
+    public BulkGraphLoader(
+        GraphRepository graphRepository,
+        @Value("${app.graph.import.path:graph.csv}") String path,
+        @Value("${app.graph.import.batch-size:10000}") int batchSize,
+        @Value("${app.graph.import.parallelism:0}") int parallelism,
+        @Value("${app.graph.import.chunk-size-mb:64}") int chunkSizeMb,
+        @Value("${app.graph.import.progress-interval-ms:5000}") long progressIntervalMs
+    ) {
+        this.graphRepository = graphRepository;
+        this.path = path;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.chunkBytes = chunkSizeMb * 1024L * 1024L;
+        this.progressIntervalMs = progressIntervalMs;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    // Loads the configured file; returns false when it is missing or could not be read
+    public boolean load() {
+        return load(Paths.get(path));
+    }
+
+    public boolean load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            System.out.println("[WARN] No edge list found at " + file + ", skipping bulk load.");
+            return false;
+        }
+
+        LongAdder rows = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        long started = System.nanoTime();
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(daemon("bulk-load-progress"));
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, daemon("bulk-load"));
+        progress.scheduleAtFixedRate(() -> System.out.println("[INFO] Bulk load: " + rows.sum() + " rows ("
+            + ratePerSecond(rows.sum(), started) + " rows/s)"), progressIntervalMs, progressIntervalMs, TimeUnit.MILLISECONDS);
+
+        BulkEdgeWriter writer = null;
+        boolean published = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            writer = graphRepository.openBulkWriter();
+            BulkEdgeWriter sink = writer;
+            List<EdgeListParser.Range> ranges = EdgeListParser.split(channel, chunkBytes);
+            System.out.println("[INFO] Bulk loading " + file + " (" + channel.size() + " bytes, "
+                + ranges.size() + " chunks, " + parallelism + " threads, batches of " + batchSize + ")...");
+
+            List<Callable<Void>> tasks = new ArrayList<>(ranges.size());
+            for (EdgeListParser.Range range : ranges) {
+                tasks.add(() -> {
+                    EdgeListParser.Counts counts = EdgeListParser.parse(channel, range, batchSize, batch -> {
+                        sink.write(batch);
+                        rows.add(batch.size());
+                    });
+                    skipped.add(counts.skipped);
+                    return null;
+                });
+            }
+            for (Future<Void> task : workers.invokeAll(tasks)) {
+                task.get();
+            }
+            writer.close();
+            published = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[WARN] Bulk load of " + file + " interrupted after " + rows.sum() + " rows");
+            return false;
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            System.out.println("[WARN] Bulk load of " + file + " failed after " + rows.sum() + " rows: " + cause.getMessage());
+            return false;
+        } finally {
+            workers.shutdownNow();
+            progress.shutdownNow();
+            // A failed import is dropped rather than published half done; workers still
+            // running after an interrupt find their writes ignored
+            if (writer != null && !published) writer.abort();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.println(String.format("[INFO] Bulk load of %s finished: %d rows, %d lines skipped in %.1f s (%d rows/s)",
+            file, rows.sum(), skipped.sum(), seconds, ratePerSecond(rows.sum(), started)));
+        return true;
+    }
+
+    private static long ratePerSecond(long rows, long startedNanos) {
+        long elapsed = System.nanoTime() - startedNanos;
+        return elapsed <= 0 ? 0 : (long) (rows * 1e9 / elapsed);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.instarecommender.loader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.example.instarecommender.repositories.EdgeBatch;
+
+// Parser for "from,to,weight" edge lists. The file is cut into byte ranges that end on line
+// boundaries; each range is memory-mapped and parsed straight from the mapping, so ranges can
+// be handled on different threads without any of them reading the whole file.
+public class EdgeListParser {
+
+    // 10^0 .. 10^22, all exactly representable
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    public static final class Range {
+        final int index;
+        final long start;
+        final long end;
+
+        Range(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // Rows parsed and lines skipped (blank, fewer than three fields, or a bad weight)
+    public static final class Counts {
+        public final long rows;
+        public final long skipped;
+
+        Counts(long rows, long skipped) {
+            this.rows = rows;
+            this.skipped = skipped;
+        }
+    }
+
+    private EdgeListParser() {
+    }
+
+    // Ranges of roughly chunkBytes each; every range but the last ends just after a '\n'
+    public static List<Range> split(FileChannel channel, long chunkBytes) throws IOException {
+        long size = channel.size();
+        List<Range> ranges = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkBytes >= size ? size : nextLineStart(channel, start + chunkBytes, size);
+            ranges.add(new Range(ranges.size(), start, end));
+            start = end;
+        }
+        return ranges;
+    }
+
+    // Parses one range, handing a batch to sink each time batchSize rows have been collected.
+    // The batch passed to sink is not reused afterwards and carries the range's index as chunk.
+    public static Counts parse(FileChannel channel, Range range, int batchSize, Consumer<EdgeBatch> sink) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range.start, range.end - range.start);
+        byte[] line = new byte[256];
+        EdgeBatch batch = new EdgeBatch(batchSize, range.index);
+        long rows = 0;
+        long skipped = 0;
+        while (buffer.hasRemaining()) {
+            int length = 0;
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') break;
+                if (length == line.length) line = Arrays.copyOf(line, length * 2);
+                line[length++] = b;
+            }
+            if (length > 0 && line[length - 1] == '\r') length--;
+            if (length == 0) continue;
+
+            if (!parseLine(line, length, batch)) {
+                skipped++;
+                continue;
+            }
+            rows++;
+            if (batch.isFull()) {
+                sink.accept(batch);
+                batch = new EdgeBatch(batchSize, range.index);
+            }
+        }
+        if (batch.size() > 0) sink.accept(batch);
+        return new Counts(rows, skipped);
+    }
+
+    private static boolean parseLine(byte[] line, int length, EdgeBatch batch) {
+        int firstComma = indexOf(line, 0, length, (byte) ',');
+        if (firstComma < 0) return false;
+        int secondComma = indexOf(line, firstComma + 1, length, (byte) ',');
+        if (secondComma < 0) return false;
+        // Anything after a third comma is ignored, like the old split-based reader did
+        int weightEnd = indexOf(line, secondComma + 1, length, (byte) ',');
+        if (weightEnd < 0) weightEnd = length;
+
+        String from = field(line, 0, firstComma);
+        String to = field(line, firstComma + 1, secondComma);
+        if (from.isEmpty() || to.isEmpty()) return false;
+        double weight;
+        try {
+            weight = parseWeight(line, secondComma + 1, weightEnd);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        batch.add(from, to, weight);
+        return true;
+    }
+
+    // Fast path for plain decimals ([-]digits[.digits]); anything else goes to Double.parseDouble.
+    // mantissa / 10^k is correctly rounded while both are exact doubles.
+    static double parseWeight(byte[] line, int start, int end) {
+        while (start < end && line[start] <= ' ') start++;
+        while (end > start && line[end - 1] <= ' ') end--;
+        int i = start;
+        boolean negative = i < end && line[i] == '-';
+        if (negative) i++;
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = line[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) fractionDigits++;
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < end || digits == 0 || digits > 15 || fractionDigits > 22) {
+            return Double.parseDouble(new String(line, start, end - start, StandardCharsets.US_ASCII));
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static String field(byte[] line, int start, int end) {
+        while (start < end && line[start] <= ' ') start++;
+        while (end > start && line[end - 1] <= ' ') end--;
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] line, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long pos = position;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.instarecommender.loader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.CsrGraphFile;
+
+// Location of the binary graph snapshot (see CsrGraphFile). Read on startup in preference
+// to the CSV edge list, written by GraphSnapshotService.
+@Component
+public class GraphSnapshotStore {
+
+    private final boolean enabled;
+    private final Path path;
+
+    public GraphSnapshotStore(
+        @Value("${app.snapshot.enabled:true}") boolean enabled,
+        @Value("${app.snapshot.path:graph.snapshot}") String path
+    ) {
+        this.enabled = enabled;
+        this.path = Paths.get(path);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        return enabled && Files.isRegularFile(path);
+    }
+
+    public CsrGraphFile.Image read() throws IOException {
+        return CsrGraphFile.read(path);
+    }
+
+    // Returns the size of the written file in bytes
+    public long write(CsrGraph graph, long logPosition) throws IOException {
+        return CsrGraphFile.write(graph, logPosition, path);
+    }
+}
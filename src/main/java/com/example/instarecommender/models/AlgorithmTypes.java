@@ -6,4 +6,5 @@ public enum AlgorithmTypes {
     PAGERANK,
     ADAMIC_ADAR,
     GNN_EMBEDDING,
+    PERSONALIZED_PAGERANK,
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example.instarecommender.models;
+
+import java.util.List;
+
+public class BatchRecommendationRequest {
+    private List<String> users;
+    private boolean allUsers;
+    private AlgorithmTypes algorithm;
+    private int limit = 10;
+
+    public List<String> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<String> users) {
+        this.users = users;
+    }
+
+    public boolean isAllUsers() {
+        return allUsers;
+    }
+
+    public void setAllUsers(boolean allUsers) {
+        this.allUsers = allUsers;
+    }
+
+    public AlgorithmTypes getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(AlgorithmTypes algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.instarecommender.models;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// One line of the NDJSON batch response
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchRecommendationResult {
+    private final String user;
+    private final List<Recommendation> recommendations;
+    private final String error;
+
+    public BatchRecommendationResult(String user, List<Recommendation> recommendations, String error) {
+        this.user = user;
+        this.recommendations = recommendations;
+        this.error = error;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public List<Recommendation> getRecommendations() {
+        return recommendations;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
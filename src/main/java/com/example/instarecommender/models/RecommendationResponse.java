@@ -2,15 +2,27 @@ package com.example.instarecommender.models;
 
 import java.util.List;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class RecommendationResponse {
     private List<Recommendation> recommendations;
     private String query;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long embeddingVersion; // set by embedding-based strategies only
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean pruned; // set by the neighbourhood strategies: true when a fan-out limit cut the traversal
 
     public RecommendationResponse(List<Recommendation> recommendations, String query) {
         this.recommendations = recommendations;
         this.query = query;
     }
 
+    public RecommendationResponse(List<Recommendation> recommendations, String query, Long embeddingVersion) {
+        this.recommendations = recommendations;
+        this.query = query;
+        this.embeddingVersion = embeddingVersion;
+    }
+
     public List<Recommendation> getRecommendations() {
         return recommendations;
     }
@@ -26,4 +38,20 @@ public class RecommendationResponse {
     public void setQuery(String query) {
         this.query = query;
     }
+
+    public Long getEmbeddingVersion() {
+        return embeddingVersion;
+    }
+
+    public void setEmbeddingVersion(Long embeddingVersion) {
+        this.embeddingVersion = embeddingVersion;
+    }
+
+    public Boolean getPruned() {
+        return pruned;
+    }
+
+    public void setPruned(Boolean pruned) {
+        this.pruned = pruned;
+    }
 }
@@ -0,0 +1,56 @@
+package com.example.instarecommender.models;
+
+// A pending change to the weight of (from -> to), expressed as w' = min(scale * w + offset, cap).
+// Interaction updates (decay, add increment, clamp) compose into this same form, so any number
+// of them on one pair collapses into a single write that needs no prior read.
+public class WeightUpdate {
+    private final String from;
+    private final String to;
+    private final double scale;
+    private final double offset;
+    private final double cap;
+
+    public WeightUpdate(String from, String to, double scale, double offset, double cap) {
+        this.from = from;
+        this.to = to;
+        this.scale = scale;
+        this.offset = offset;
+        this.cap = cap;
+    }
+
+    public static WeightUpdate identity(String from, String to) {
+        return new WeightUpdate(from, to, 1.0, 0.0, Double.POSITIVE_INFINITY);
+    }
+
+    // Applies w -> min(decay * w + increment, max) after this update
+    public WeightUpdate andThen(double decay, double increment, double max) {
+        return new WeightUpdate(from, to,
+            decay * scale,
+            decay * offset + increment,
+            Math.min(decay * cap + increment, max));
+    }
+
+    public double apply(double weight) {
+        return Math.min(scale * weight + offset, cap);
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public double getOffset() {
+        return offset;
+    }
+
+    public double getCap() {
+        return cap;
+    }
+}
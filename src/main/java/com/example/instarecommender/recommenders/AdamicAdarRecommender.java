@@ -1,45 +1,79 @@
 package com.example.instarecommender.recommenders;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
 
 import com.example.instarecommender.models.Recommendation;
 import com.example.instarecommender.models.RecommendationResponse;
-import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.recommenders.scoring.FanOutPolicy;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+import com.example.instarecommender.recommenders.scoring.ScoreAccumulator;
+import com.example.instarecommender.recommenders.scoring.TopKSelector;
+import com.example.instarecommender.repositories.CandidateIndex;
+import com.example.instarecommender.repositories.csr.CsrGraph;
 import com.example.instarecommender.services.GraphService;
 
-public class AdamicAdarRecommender implements RecommenderStrategy {
-    private final GraphService graphService;
+public class AdamicAdarRecommender extends SnapshotRecommender {
+    private final FanOutPolicy fanOut;
 
-    public AdamicAdarRecommender(GraphService graphService) {
-        this.graphService = graphService;
+    public AdamicAdarRecommender(GraphService graphService, FanOutPolicy fanOut) {
+        super(graphService);
+        this.fanOut = fanOut;
     }
 
     @Override
-    public RecommendationResponse recommend(String user, int limit) {
-        Set<String> userFollowing = graphService.getFollowing(user);
-        Map<String, Double> scores = new HashMap<>();
-        
-        for (String friend : userFollowing) {
-            Set<String> friendsOfFriend = graphService.getFollowing(friend);
-            
-            int degree = friendsOfFriend.size();
-            if (degree <= 1) continue;
-            
-            double weight = 1.0 / Math.log(degree);
-
-            for (String candidate : friendsOfFriend) {
-                if (!candidate.equals(user) && !userFollowing.contains(candidate)) {
-                    scores.merge(candidate, weight, Double::sum);
-                }
-            }
+    protected RecommendationResponse recommend(CsrGraph graph, String user, int limit) {
+        RecommendationResponse indexed = fromIndex(graph, user, limit);
+        if (indexed != null) return indexed;
+
+        int u = graph.indexOf(user);
+        if (u < 0) {
+            return new RecommendationResponse(List.of(), "In-memory Adamic-Adar");
+        }
+
+        RecommendationTrace trace = RecommendationTrace.current();
+        ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+        acc.exclude(u);
+        for (int i = graph.outStart(u); i < graph.outEnd(u); i++) {
+            acc.exclude(graph.outTarget(i));
         }
-        
-        return new RecommendationResponse(scores.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-            .limit(limit)
-            .map(e -> new Recommendation(e.getKey(), e.getValue(), "adamic-adar-memory"))
-            .toList(), "In-memory Adamic-Adar");
+
+        // A followed account that follows only one user would weigh 1/log(1), so it is skipped
+        boolean pruned = fanOut.expandTwoHops(graph, u, acc, friend -> {
+            int degree = graph.outDegree(friend);
+            return degree <= 1 ? -1 : 1.0 / Math.log(degree);
+        });
+        trace.candidates(acc.candidateCount());
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        List<Recommendation> recommendations = acc.selectTop(limit).toRecommendations(graph::userAt, "adamic-adar-memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
+        RecommendationResponse response = new RecommendationResponse(recommendations, "In-memory Adamic-Adar");
+        response.setPruned(pruned);
+        return response;
+    }
+
+    // O(candidates per user) instead of a traversal, when the store keeps a candidate index.
+    // The index holds every path, so the fan-out caps (there to bound the traversal) do not apply.
+    private RecommendationResponse fromIndex(CsrGraph graph, String user, int limit) {
+        CandidateIndex index = graphService.getCandidateIndex();
+        if (index == null) return null;
+        RecommendationTrace trace = RecommendationTrace.current();
+        TopKSelector top = ScoreAccumulator.acquire(graph.vertexCount()).topK(limit);
+        int[] candidates = {0};
+        CandidateIndex.Answer answer = index.visit(user, limit, (candidate, commonNeighbors, adamicAdar) -> {
+            // Reached only through accounts that follow a single user: the traversal skips those
+            if (adamicAdar > 0) top.offer(candidate, adamicAdar);
+            candidates[0]++;
+        });
+        if (answer == CandidateIndex.Answer.UNAVAILABLE) return null;
+        trace.candidates(candidates[0]);
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        List<Recommendation> recommendations = top.toRecommendations(graph::userAt, "adamic-adar-memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
+        RecommendationResponse response = new RecommendationResponse(recommendations, "In-memory Adamic-Adar (candidate index)");
+        // A truncated table holds the top candidates by count, not by Adamic-Adar score
+        response.setPruned(answer == CandidateIndex.Answer.TRUNCATED);
+        return response;
     }
-}
\ No newline at end of file
+}
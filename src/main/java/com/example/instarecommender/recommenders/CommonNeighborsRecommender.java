@@ -1,49 +1,77 @@
 package com.example.instarecommender.recommenders;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.example.instarecommender.models.Recommendation;
 import com.example.instarecommender.models.RecommendationResponse;
-import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.recommenders.scoring.FanOutPolicy;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+import com.example.instarecommender.recommenders.scoring.ScoreAccumulator;
+import com.example.instarecommender.recommenders.scoring.TopKSelector;
+import com.example.instarecommender.repositories.CandidateIndex;
+import com.example.instarecommender.repositories.csr.CsrGraph;
 import com.example.instarecommender.services.GraphService;
 
-public class CommonNeighborsRecommender implements RecommenderStrategy {
+public class CommonNeighborsRecommender extends SnapshotRecommender {
 
-    private final GraphService graphService;
+    private final FanOutPolicy fanOut;
 
-    public CommonNeighborsRecommender(GraphService graphService) {
-        this.graphService = graphService;
+    public CommonNeighborsRecommender(GraphService graphService, FanOutPolicy fanOut) {
+        super(graphService);
+        this.fanOut = fanOut;
     }
 
     @Override
-    public RecommendationResponse recommend(String user, int limit) {
-        Set<String> userFollowing = graphService.getFollowing(user);
-        Map<String, Double> scores = new HashMap<>();
-
-        Set<String> candidates = userFollowing.stream()
-            .flatMap(f -> graphService.getFollowing(f).stream())
-            .filter(c -> !c.equals(user) && !userFollowing.contains(c))
-            .collect(Collectors.toSet());
-
-        for (String candidate : candidates) {
-            Set<String> candidateFollowers = graphService.getFollowers(candidate);
-            Set<String> intersection = new HashSet<>(userFollowing);
-            intersection.retainAll(candidateFollowers);
-            scores.put(candidate, (double) intersection.size());
+    protected RecommendationResponse recommend(CsrGraph graph, String user, int limit) {
+        RecommendationResponse indexed = fromIndex(graph, user, limit);
+        if (indexed != null) return indexed;
+
+        int u = graph.indexOf(user);
+        if (u < 0) {
+            return new RecommendationResponse(List.of(), "In-memory Common Neighbors calculation");
+        }
+
+        RecommendationTrace trace = RecommendationTrace.current();
+        ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+        acc.exclude(u);
+        for (int i = graph.outStart(u); i < graph.outEnd(u); i++) {
+            acc.exclude(graph.outTarget(i));
         }
 
-        List<Recommendation> recommendations = scores.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-            .limit(limit)
-            .map(e -> new Recommendation(e.getKey(), e.getValue(), "common_neighbors_in_memory"))
-            .toList();
+        // One hit per followed account that also follows the candidate
+        boolean pruned = fanOut.expandTwoHops(graph, u, acc, friend -> 1.0);
+        // The hit counts are the scores, so there is no separate scoring stage
+        trace.candidates(acc.candidateCount());
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        List<Recommendation> recommendations = acc.selectTop(limit).toRecommendations(graph::userAt, "common_neighbors_in_memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
 
-        return new RecommendationResponse(recommendations, "In-memory Common Neighbors calculation");
+        RecommendationResponse response = new RecommendationResponse(recommendations, "In-memory Common Neighbors calculation");
+        response.setPruned(pruned);
+        return response;
     }
-}
 
+    // O(candidates per user) instead of a traversal, when the store keeps a candidate index.
+    // The index holds every path, so the fan-out caps (there to bound the traversal) do not apply.
+    private RecommendationResponse fromIndex(CsrGraph graph, String user, int limit) {
+        CandidateIndex index = graphService.getCandidateIndex();
+        if (index == null) return null;
+        RecommendationTrace trace = RecommendationTrace.current();
+        TopKSelector top = ScoreAccumulator.acquire(graph.vertexCount()).topK(limit);
+        int[] candidates = {0};
+        CandidateIndex.Answer answer = index.visit(user, limit, (candidate, commonNeighbors, adamicAdar) -> {
+            top.offer(candidate, commonNeighbors);
+            candidates[0]++;
+        });
+        if (answer == CandidateIndex.Answer.UNAVAILABLE) return null;
+        trace.candidates(candidates[0]);
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        List<Recommendation> recommendations = top.toRecommendations(graph::userAt, "common_neighbors_in_memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
+        RecommendationResponse response = new RecommendationResponse(recommendations, "In-memory Common Neighbors (candidate index)");
+        response.setPruned(false);
+        return response;
+    }
+}
@@ -1,132 +1,63 @@
 package com.example.instarecommender.recommenders;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
 import com.example.instarecommender.models.Recommendation;
 import com.example.instarecommender.models.RecommendationResponse;
-import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.recommenders.gnn.EmbeddingTable;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+import com.example.instarecommender.recommenders.scoring.ScoreAccumulator;
+import com.example.instarecommender.recommenders.scoring.TopKSelector;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.services.GnnEmbeddingService;
 import com.example.instarecommender.services.GraphService;
 
-public class GNNRecommender implements RecommenderStrategy{
+public class GNNRecommender extends SnapshotRecommender {
 
-    private final GraphService graphService;
-    private static final int EMBEDDING_SIZE = 64;
-    private static final int LAYERS = 2;
+    private final GnnEmbeddingService embeddingService;
+    // scratch heap for picking the IVF lists to probe
+    private final ThreadLocal<TopKSelector> probes = ThreadLocal.withInitial(TopKSelector::new);
 
-    public GNNRecommender(GraphService graphService) {
-        this.graphService = graphService;
+    public GNNRecommender(GnnEmbeddingService embeddingService, GraphService graphService) {
+        super(graphService);
+        this.embeddingService = embeddingService;
     }
 
     @Override
-    public RecommendationResponse recommend(String targetUser, int limit) {
-        // 1. Snapshot the graph
-        Map<String, Set<String>> adjacency = graphService.getAllConnections();
-
-        // Create a mapping from User String ID -> Int Index (0 to N)
-        Set<String> uniqueUsers = new HashSet<>(adjacency.keySet());
-        adjacency.values().forEach(uniqueUsers::addAll);
-        List<String> nodeList = new ArrayList<>(uniqueUsers);
-        Collections.sort(nodeList);
-
-        int numNodes = nodeList.size();
-        Map<String, Integer> userToIndex = new HashMap<>();
-        for (int i = 0; i < numNodes; i++) {
-            userToIndex.put(nodeList.get(i), i);
-        }
-
-        if (!userToIndex.containsKey(targetUser)) {
-            return new RecommendationResponse(List.of(), "User not found in graph");
-        }
-
-        // 2. Create Adjacency Matrix (A) using ND4J
-
-        INDArray adjMatrix = Nd4j.zeros(numNodes, numNodes);
-        for (String from : adjacency.keySet()) {
-            int fromIdx = userToIndex.get(from);
-            for (String to : adjacency.get(from)) {
-                if (userToIndex.containsKey(to)) {
-                    int toIdx = userToIndex.get(to);
-                    // Add self-loops (A + I) is common in GCN to retain own features
-                    adjMatrix.putScalar(fromIdx, toIdx, 1);
-                }
-            }
-        }
-
-        //Add Self-Loops (Important so you don't "forget" your own identity)
-        for (int i = 0; i < numNodes; i++) {
-            adjMatrix.putScalar(i, i, 1);
+    protected RecommendationResponse recommend(CsrGraph graph, String targetUser, int limit) {
+        // Embeddings are precomputed by GnnEmbeddingService (seeded LightGCN propagation)
+        RecommendationTrace trace = RecommendationTrace.current();
+        GnnEmbeddingService.Model model = embeddingService.model();
+        EmbeddingTable table = model.getTable();
+        long version = table.getVersion();
+
+        int targetIdx = table.getGraph().indexOf(targetUser);
+        if (targetIdx < 0) {
+            return new RecommendationResponse(List.of(), "User not found in embedding table", version);
         }
 
-        // 3. Normalize Adjacency Matrix (Row Normalize: D^-1 * A)
-        // This prevents features from exploding in magnitude
-        INDArray degrees = adjMatrix.sum(1);
-        for (int i = 0; i < numNodes; i++) {
-            double degree = degrees.getDouble(i);
-            if (degree > 0) {
-                adjMatrix.getRow(i).divi(Nd4j.scalar(degree));
+        // Skip the user and everyone they follow right now, even if the table is older
+        ScoreAccumulator acc = ScoreAccumulator.acquire(Math.max(graph.vertexCount(), table.rows()));
+        acc.exclude(targetIdx);
+        int current = graph.indexOf(targetUser);
+        if (current >= 0) {
+            for (int i = graph.outStart(current); i < graph.outEnd(current); i++) {
+                acc.exclude(graph.outTarget(i));
             }
+            trace.neighborFetches(1);
         }
-
-        // 4. Initialize Feature Matrix (X)
-        // In a real app, this could be Age, Location, etc.
-        // Here, we use Random Gaussian noise. This works surprisingly well for structure learning.
-        // Or we could use an Identity matrix (One-Hot) for pure ID-based learning.
-        INDArray features = Nd4j.randn(numNodes, EMBEDDING_SIZE);
-
-        // 5. Message Passing (The "Neural Network" part)
-        INDArray embeddings = features;
-        for (int i = 0; i < LAYERS; i++) {
-            embeddings = adjMatrix.mmul(embeddings);
-        }
-
-        // 6. Generate Recommendations based on Cosine Similarity
-        // A. Normalize all embeddings to Unit Vectors (Length = 1)
-        // This makes Cosine Similarity equivalent to a simple Dot Product
-        // norm2(1) calculates the L2 norm for each row (axis 1)
-        INDArray norms = embeddings.norm2(1); 
-        // Divide in-place (add small epsilon 1e-8 to avoid division by zero)
-        embeddings.diviColumnVector(norms.add(1e-8)); 
-
-        // B. Get the normalized target vector
-        // Since we normalized the whole matrix 'embeddings', this row is already normalized.
-        int targetIdx = userToIndex.get(targetUser);
-        INDArray targetVector = embeddings.getRow(targetIdx);
-
-        // C. Calculate Scores via Matrix Multiplication
-        // [NumNodes, Features] x [Features, 1] = [NumNodes, 1]
-        // The result is a column vector where row 'i' is the similarity score for user 'i'
-        INDArray targetColumn = targetVector.reshape(EMBEDDING_SIZE, 1);
-        INDArray similarities = embeddings.mmul(targetColumn);
-
-        List<Recommendation> recs = new ArrayList<>();
-        Set<String> alreadyFollowing = graphService.getFollowing(targetUser);
-
-        // D. Extract results
-        for (int i = 0; i < numNodes; i++) {
-            String candidate = nodeList.get(i);
-            
-            if (!candidate.equals(targetUser) && !alreadyFollowing.contains(candidate)) {
-                // Get the scalar score from the results vector
-                double score = similarities.getDouble(i);
-                recs.add(new Recommendation(candidate, score, "gnn_lightgcn_embedding"));
-            }
-        }
-
-        List<Recommendation> topRecs = recs.stream()
-            .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
-            .limit(limit)
-            .collect(Collectors.toList());
-        return new RecommendationResponse(topRecs, "GNN (Matrix Factorization/Propagation) via ND4J");
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        // Approximate nearest neighbors by cosine similarity (rows are unit length)
+        float[] query = new float[table.dim()];
+        table.copyRow(targetIdx, query);
+        TopKSelector top = acc.topK(limit);
+        model.getIndex().search(query, embeddingService.getNprobe(), acc::isExcluded, probes.get(), top);
+        trace.endStage(RecommendationTrace.Stage.SCORING);
+
+        List<Recommendation> topRecs = top.toRecommendations(table.getGraph()::userAt, "gnn_lightgcn_embedding");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
+        return new RecommendationResponse(topRecs, "GNN embeddings v" + version + " (IVF nearest neighbors)", version);
     }
     
 }
@@ -1,53 +1,59 @@
 package com.example.instarecommender.recommenders;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.example.instarecommender.models.Recommendation;
 import com.example.instarecommender.models.RecommendationResponse;
-import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.recommenders.scoring.FanOutPolicy;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+import com.example.instarecommender.recommenders.scoring.ScoreAccumulator;
+import com.example.instarecommender.repositories.csr.CsrGraph;
 import com.example.instarecommender.services.GraphService;
 
-public class JaccardRecommender implements RecommenderStrategy {
+public class JaccardRecommender extends SnapshotRecommender {
 
-    private final GraphService graphService;
+    private final FanOutPolicy fanOut;
 
-    public JaccardRecommender(GraphService graphService) {
-        this.graphService = graphService;
+    public JaccardRecommender(GraphService graphService, FanOutPolicy fanOut) {
+        super(graphService);
+        this.fanOut = fanOut;
     }
 
     @Override
-    public RecommendationResponse recommend(String user, int limit) {
-        Set<String> userFollowing = graphService.getFollowing(user);
-        Map<String, Double> scores = new HashMap<>();
-
-        Set<String> candidates = userFollowing.stream()
-            .flatMap(f -> graphService.getFollowing(f).stream())
-            .filter(c -> !c.equals(user) && !userFollowing.contains(c))
-            .collect(Collectors.toSet());
-
-        for (String candidate : candidates) {
-            Set<String> candidateFollowers = graphService.getFollowers(candidate);
-            Set<String> intersection = new HashSet<>(userFollowing);
-            intersection.retainAll(candidateFollowers);
+    protected RecommendationResponse recommend(CsrGraph graph, String user, int limit) {
+        int u = graph.indexOf(user);
+        if (u < 0) {
+            return new RecommendationResponse(List.of(), "In-memory Jaccard calculation");
+        }
 
-            Set<String> union = new HashSet<>(userFollowing);
-            union.addAll(candidateFollowers);
+        RecommendationTrace trace = RecommendationTrace.current();
+        ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+        acc.exclude(u);
+        for (int i = graph.outStart(u); i < graph.outEnd(u); i++) {
+            acc.exclude(graph.outTarget(i));
+        }
 
-            double jaccard = union.isEmpty() ? 0 : (double) intersection.size() / union.size();
-            scores.put(candidate, jaccard);
+        // Every path u -> f -> c means f is both followed by u and a follower of c,
+        // so the hit count per candidate is exactly |following(u) ∩ followers(c)|
+        // (under sampling the count only covers the sampled paths; the union keeps full degrees)
+        boolean pruned = fanOut.expandTwoHops(graph, u, acc, friend -> 0);
+        trace.candidates(acc.candidateCount());
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        int userFollowing = graph.outDegree(u);
+        for (int i = 0; i < acc.candidateCount(); i++) {
+            int candidate = acc.candidate(i);
+            int intersection = acc.count(candidate);
+            int union = userFollowing + graph.inDegree(candidate) - intersection;
+            acc.setScore(candidate, union == 0 ? 0 : (double) intersection / union);
         }
+        trace.endStage(RecommendationTrace.Stage.SCORING);
+
+        List<Recommendation> recommendations = acc.selectTop(limit).toRecommendations(graph::userAt, "jaccard_in_memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
 
-        List<Recommendation> recommendations = scores.entrySet().stream()
-            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-            .limit(limit)
-            .map(e -> new Recommendation(e.getKey(), e.getValue(), "jaccard_in_memory"))
-            .toList();
-        
-        return new RecommendationResponse(recommendations, "In-memory Jaccard calculation");
+        RecommendationResponse response = new RecommendationResponse(recommendations, "In-memory Jaccard calculation");
+        response.setPruned(pruned);
+        return response;
     }
-}
\ No newline at end of file
+}
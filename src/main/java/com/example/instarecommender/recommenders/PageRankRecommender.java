@@ -2,40 +2,52 @@ package com.example.instarecommender.recommenders;
 
 import com.example.instarecommender.models.Recommendation;
 import com.example.instarecommender.models.RecommendationResponse;
-import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
-
-import org.jgrapht.Graph;
-import org.jgrapht.alg.scoring.PageRank;
-import org.jgrapht.graph.DefaultWeightedEdge;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+import com.example.instarecommender.recommenders.scoring.ScoreAccumulator;
+import com.example.instarecommender.recommenders.scoring.TopKSelector;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.services.GraphService;
+import com.example.instarecommender.services.PageRankService;
 
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
-public class PageRankRecommender implements RecommenderStrategy {
+public class PageRankRecommender extends SnapshotRecommender {
 
-    private final Graph<String, DefaultWeightedEdge> graph;
-    private final Set<String> allUsers;
+    private final PageRankService pageRankService;
 
-    public PageRankRecommender(Graph<String, DefaultWeightedEdge> graph) {
-        this.graph = graph;
-        this.allUsers = graph.vertexSet();
+    public PageRankRecommender(PageRankService pageRankService, GraphService graphService) {
+        super(graphService);
+        this.pageRankService = pageRankService;
     }
 
     @Override
-    public RecommendationResponse recommend(String user, int limit) {
-        PageRank<String, DefaultWeightedEdge> pageRank = new PageRank<>(graph);
-        Set<String> userFollowing = graph.outgoingEdgesOf(user).stream()
-                                        .map(graph::getEdgeTarget)
-                                        .collect(Collectors.toSet());
-
-        List<Recommendation> recommendations = allUsers.stream()
-            .filter(u -> !u.equals(user) && !userFollowing.contains(u))
-            .map(u -> new Recommendation(u, pageRank.getVertexScore(u), "pagerank_in_memory"))
-            .sorted((r1, r2) -> Double.compare(r2.getScore(), r1.getScore()))
-            .limit(limit)
-            .collect(Collectors.toList());
-
-        return new RecommendationResponse(recommendations, "In-memory PageRank calculation using JGraphT");
+    protected RecommendationResponse recommend(CsrGraph graph, String user, int limit) {
+        // Scores may lag behind the graph by the staleness bound; exclusions use the latest view.
+        // Ids are stable across snapshots, so both index the same users.
+        RecommendationTrace trace = RecommendationTrace.current();
+        PageRankService.Scores scores = pageRankService.scores();
+        int candidates = Math.min(scores.size(), graph.vertexCount());
+
+        ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+        int u = graph.indexOf(user);
+        if (u >= 0) {
+            acc.exclude(u);
+            for (int i = graph.outStart(u); i < graph.outEnd(u); i++) {
+                acc.exclude(graph.outTarget(i));
+            }
+            trace.neighborFetches(1);
+        }
+        // Every user is a candidate and the scores are precomputed
+        trace.candidates(candidates);
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        TopKSelector top = acc.topK(limit);
+        for (int v = 0; v < candidates; v++) {
+            if (!acc.isExcluded(v)) top.offer(v, scores.rank(v));
+        }
+
+        List<Recommendation> recommendations = top.toRecommendations(graph::userAt, "pagerank_in_memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
+        return new RecommendationResponse(recommendations, "In-memory weighted PageRank (precomputed)");
     }
 }
@@ -0,0 +1,89 @@
+package com.example.instarecommender.recommenders;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.example.instarecommender.models.Recommendation;
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+import com.example.instarecommender.recommenders.scoring.ScoreAccumulator;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.services.GraphService;
+
+// Personalized PageRank estimated with Monte-Carlo random walks with restart from the user.
+// The visit frequency of each node approximates its PPR score. The cost depends on the walk
+// and time budgets, not on the size of the graph. Like the GDS version used by the Neo4j
+// profile, walks ignore edge weights. The walks of a request are drawn from a generator
+// seeded with the user and the configured seed, so the same graph gives the same result
+// whenever the walks finish within the time budget.
+public class PersonalizedPageRankRecommender extends SnapshotRecommender {
+
+    private final int maxWalks;
+    private final int maxWalkLength;
+    private final long timeBudgetNanos;
+    private final double restartProbability;
+    private final long seed;
+
+    public PersonalizedPageRankRecommender(GraphService graphService, int maxWalks, int maxWalkLength,
+                                           long timeBudgetMs, double restartProbability, long seed) {
+        super(graphService);
+        this.maxWalks = maxWalks;
+        this.maxWalkLength = maxWalkLength;
+        this.timeBudgetNanos = timeBudgetMs * 1_000_000L;
+        this.restartProbability = restartProbability;
+        this.seed = seed;
+    }
+
+    @Override
+    protected RecommendationResponse recommend(CsrGraph graph, String user, int limit) {
+        int u = graph.indexOf(user);
+        if (u < 0 || graph.outDegree(u) == 0) {
+            return new RecommendationResponse(List.of(), "In-memory personalized PageRank (no walks from " + user + ")");
+        }
+
+        RecommendationTrace trace = RecommendationTrace.current();
+        ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+        acc.exclude(u);
+        for (int i = graph.outStart(u); i < graph.outEnd(u); i++) {
+            acc.exclude(graph.outTarget(i));
+        }
+
+        // String.hashCode is fixed by the spec, so the walks repeat across runs too
+        SplittableRandom random = new SplittableRandom(seed ^ user.hashCode());
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        int walks = 0;
+        long visits = 0;
+        while (walks < maxWalks) {
+            // Check the clock every 64 walks to keep nanoTime off the inner loop
+            if ((walks & 63) == 0 && walks > 0 && System.nanoTime() > deadline) break;
+            walks++;
+
+            int current = u;
+            for (int step = 0; step < maxWalkLength; step++) {
+                int degree = graph.outDegree(current);
+                if (degree == 0) break;
+                current = graph.outTarget(graph.outStart(current) + random.nextInt(degree));
+                visits++;
+                // Followed accounts are still walked through, they just cannot be recommended
+                if (!acc.isExcluded(current)) acc.add(current, 1.0);
+                if (random.nextDouble() < restartProbability) break;
+            }
+        }
+        // Each step reads one adjacency list
+        trace.neighborFetches(1 + visits);
+        trace.candidates(acc.candidateCount());
+        trace.endStage(RecommendationTrace.Stage.CANDIDATES);
+
+        double norm = visits == 0 ? 1 : visits;
+        for (int i = 0; i < acc.candidateCount(); i++) {
+            int candidate = acc.candidate(i);
+            acc.setScore(candidate, acc.score(candidate) / norm);
+        }
+        trace.endStage(RecommendationTrace.Stage.SCORING);
+
+        List<Recommendation> recommendations = acc.selectTop(limit).toRecommendations(graph::userAt, "personalized_pagerank_in_memory");
+        trace.endStage(RecommendationTrace.Stage.TOP_K);
+        return new RecommendationResponse(recommendations,
+            "In-memory personalized PageRank (Monte-Carlo, " + walks + " walks, " + visits + " steps)");
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.instarecommender.recommenders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.services.GraphService;
+
+// Base of the in-memory strategies: each call scores against one CsrGraph snapshot,
+// and a batch takes a single snapshot for all of its users.
+public abstract class SnapshotRecommender implements RecommenderStrategy {
+    protected final GraphService graphService;
+
+    protected SnapshotRecommender(GraphService graphService) {
+        this.graphService = graphService;
+    }
+
+    @Override
+    public RecommendationResponse recommend(String user, int limit) {
+        return recommend(graphService.snapshot(), user, limit);
+    }
+
+    @Override
+    public List<RecommendationResponse> recommendBatch(List<String> users, int limit) {
+        return recommendBatch(graphService.snapshot(), users, limit);
+    }
+
+    // Lets a caller that splits one batch into several calls score all of them against the same view
+    public List<RecommendationResponse> recommendBatch(CsrGraph graph, List<String> users, int limit) {
+        List<RecommendationResponse> responses = new ArrayList<>(users.size());
+        for (String user : users) {
+            responses.add(recommend(graph, user, limit));
+        }
+        return responses;
+    }
+
+    protected abstract RecommendationResponse recommend(CsrGraph graph, String user, int limit);
+}
@@ -3,6 +3,7 @@ package com.example.instarecommender.recommenders.factory;
 import java.util.EnumMap;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
@@ -12,9 +13,11 @@ import com.example.instarecommender.recommenders.CommonNeighborsRecommender;
 import com.example.instarecommender.recommenders.GNNRecommender;
 import com.example.instarecommender.recommenders.JaccardRecommender;
 import com.example.instarecommender.recommenders.PageRankRecommender;
-import com.example.instarecommender.repositories.GraphRepository;
-import com.example.instarecommender.repositories.InMemoryGraphRepository;
+import com.example.instarecommender.recommenders.PersonalizedPageRankRecommender;
+import com.example.instarecommender.recommenders.scoring.FanOutPolicy;
+import com.example.instarecommender.services.GnnEmbeddingService;
 import com.example.instarecommender.services.GraphService;
+import com.example.instarecommender.services.PageRankService;
 
 @Component
 @Profile("in-memory")
@@ -22,16 +25,29 @@ public class InMemoryRecommenderFactory implements RecommenderFactory {
 
     private final Map<AlgorithmTypes, RecommenderStrategy> strategies;
 
-    public InMemoryRecommenderFactory(GraphService graphService) {
-        GraphRepository repo = graphService.getGraphRepository();
-        InMemoryGraphRepository mem = (InMemoryGraphRepository) repo;
-
+    public InMemoryRecommenderFactory(
+        GraphService graphService,
+        PageRankService pageRankService,
+        GnnEmbeddingService gnnEmbeddingService,
+        @Value("${app.ppr.max-walks:2000}") int pprMaxWalks,
+        @Value("${app.ppr.max-walk-length:32}") int pprMaxWalkLength,
+        @Value("${app.ppr.time-budget-ms:20}") long pprTimeBudgetMs,
+        @Value("${app.ppr.restart-probability:0.15}") double pprRestartProbability,
+        @Value("${app.ppr.seed:42}") long pprSeed,
+        @Value("${app.fanout.max-neighbors-per-hop:0}") int fanOutMaxNeighborsPerHop,
+        @Value("${app.fanout.max-candidates:0}") int fanOutMaxCandidates,
+        @Value("${app.fanout.super-node-degree:0}") int fanOutSuperNodeDegree,
+        @Value("${app.fanout.seed:42}") long fanOutSeed
+    ) {
+        FanOutPolicy fanOut = new FanOutPolicy(fanOutMaxNeighborsPerHop, fanOutMaxCandidates, fanOutSuperNodeDegree, fanOutSeed);
         strategies = new EnumMap<>(AlgorithmTypes.class);
-        strategies.put(AlgorithmTypes.JACCARD, new JaccardRecommender(graphService));
-        strategies.put(AlgorithmTypes.COMMON_NEIGHBORS, new CommonNeighborsRecommender(graphService));
-        strategies.put(AlgorithmTypes.PAGERANK, new PageRankRecommender(mem.getGraph()));
-        strategies.put(AlgorithmTypes.ADAMIC_ADAR, new AdamicAdarRecommender(graphService));
-        strategies.put(AlgorithmTypes.GNN_EMBEDDING, new GNNRecommender(graphService));
+        strategies.put(AlgorithmTypes.JACCARD, new JaccardRecommender(graphService, fanOut));
+        strategies.put(AlgorithmTypes.COMMON_NEIGHBORS, new CommonNeighborsRecommender(graphService, fanOut));
+        strategies.put(AlgorithmTypes.PAGERANK, new PageRankRecommender(pageRankService, graphService));
+        strategies.put(AlgorithmTypes.ADAMIC_ADAR, new AdamicAdarRecommender(graphService, fanOut));
+        strategies.put(AlgorithmTypes.GNN_EMBEDDING, new GNNRecommender(gnnEmbeddingService, graphService));
+        strategies.put(AlgorithmTypes.PERSONALIZED_PAGERANK, new PersonalizedPageRankRecommender(
+            graphService, pprMaxWalks, pprMaxWalkLength, pprTimeBudgetMs, pprRestartProbability, pprSeed));
     }
 
     @Override
@@ -4,6 +4,7 @@ import java.util.EnumMap;
 import java.util.Map;
 
 import org.neo4j.driver.Driver;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
@@ -12,6 +13,7 @@ import com.example.instarecommender.recommenders.neo4j.Neo4jAdamicAdarRecommende
 import com.example.instarecommender.recommenders.neo4j.Neo4jCommonNeighborsRecommender;
 import com.example.instarecommender.recommenders.neo4j.Neo4jJaccardRecommender;
 import com.example.instarecommender.recommenders.neo4j.Neo4jPageRankRecommender;
+import com.example.instarecommender.repositories.GdsProjectionManager;
 
 @Component
 @Profile("neo4j")
@@ -19,11 +21,18 @@ public class Neo4jRecommenderFactory implements RecommenderFactory {
 
     private final Map<AlgorithmTypes, RecommenderStrategy> strategies;
 
-    public Neo4jRecommenderFactory(Driver driver) {
+    public Neo4jRecommenderFactory(
+        Driver driver,
+        GdsProjectionManager projections,
+        @Value("${app.neo4j.jaccard.fan-out-cap:500}") int jaccardFanOutCap,
+        @Value("${app.neo4j.jaccard.candidate-cap:1000}") int jaccardCandidateCap
+    ) {
         strategies = new EnumMap<>(AlgorithmTypes.class);
-        strategies.put(AlgorithmTypes.JACCARD, new Neo4jJaccardRecommender(driver));
+        strategies.put(AlgorithmTypes.JACCARD, new Neo4jJaccardRecommender(driver, jaccardFanOutCap, jaccardCandidateCap));
         strategies.put(AlgorithmTypes.COMMON_NEIGHBORS, new Neo4jCommonNeighborsRecommender(driver));
-        strategies.put(AlgorithmTypes.PAGERANK, new Neo4jPageRankRecommender(driver));
+        strategies.put(AlgorithmTypes.PAGERANK, new Neo4jPageRankRecommender(driver, projections));
+        // The GDS query already runs with sourceNodes: [u]
+        strategies.put(AlgorithmTypes.PERSONALIZED_PAGERANK, strategies.get(AlgorithmTypes.PAGERANK));
         strategies.put(AlgorithmTypes.ADAMIC_ADAR, new Neo4jAdamicAdarRecommender(driver));
     }
 
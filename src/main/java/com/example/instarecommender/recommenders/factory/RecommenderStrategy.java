@@ -1,8 +1,31 @@
 package com.example.instarecommender.recommenders.factory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import com.example.instarecommender.models.RecommendationResponse;
 
 public interface RecommenderStrategy {
     RecommendationResponse recommend(String user, int limit);
-    
+
+    // Strategies backed by a remote store override this to return before the result arrives.
+    // In-memory strategies are CPU-bound, so they compute on the calling thread.
+    default CompletableFuture<RecommendationResponse> recommendAsync(String user, int limit) {
+        try {
+            return CompletableFuture.completedFuture(recommend(user, limit));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // One response per user, in input order. Strategies override this to share work across
+    // the batch (one graph snapshot, one database round trip).
+    default List<RecommendationResponse> recommendBatch(List<String> users, int limit) {
+        List<RecommendationResponse> responses = new ArrayList<>(users.size());
+        for (String user : users) {
+            responses.add(recommend(user, limit));
+        }
+        return responses;
+    }
 }
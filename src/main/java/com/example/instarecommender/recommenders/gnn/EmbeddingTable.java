@@ -0,0 +1,70 @@
+package com.example.instarecommender.recommenders.gnn;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+// Read-only, unit-length user embeddings stored off-heap (row i = user i of `graph`).
+// Keeping the matrix in a direct buffer keeps a large table out of the GC's way.
+public final class EmbeddingTable {
+    private final CsrGraph graph;
+    private final FloatBuffer data;
+    private final int rows;
+    private final int dim;
+    private final long version;
+    private final long computedAt;
+
+    public EmbeddingTable(CsrGraph graph, float[] embeddings, int dim, long version) {
+        this.graph = graph;
+        this.rows = graph.vertexCount();
+        this.dim = dim;
+        this.version = version;
+        this.computedAt = System.currentTimeMillis();
+        // Row offsets are int, so a table that would not fit fails here rather than wrapping around
+        int cells = Math.multiplyExact(rows, dim);
+        this.data = ByteBuffer.allocateDirect(Math.toIntExact(Math.multiplyExact((long) cells, Float.BYTES)))
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+        data.put(embeddings, 0, cells);
+        data.flip();
+    }
+
+    public CsrGraph getGraph() {
+        return graph;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getComputedAt() {
+        return computedAt;
+    }
+
+    public float get(int row, int k) {
+        return data.get(row * dim + k);
+    }
+
+    public void copyRow(int row, float[] target) {
+        data.get(row * dim, target, 0, dim);
+    }
+
+    public float dot(int row, float[] vector) {
+        int offset = row * dim;
+        float dot = 0;
+        for (int k = 0; k < dim; k++) {
+            dot += data.get(offset + k) * vector[k];
+        }
+        return dot;
+    }
+}
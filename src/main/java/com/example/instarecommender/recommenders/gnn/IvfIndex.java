@@ -0,0 +1,165 @@
+package com.example.instarecommender.recommenders.gnn;
+
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import com.example.instarecommender.recommenders.scoring.TopKSelector;
+
+// Inverted-file (IVF) nearest-neighbor index over an EmbeddingTable, using inner product.
+// Rows are clustered with spherical k-means; a query only scans the rows of the
+// `nprobe` clusters whose centroids are closest to it instead of the whole table.
+public final class IvfIndex {
+    private static final int TRAINING_SAMPLE = 50_000;
+
+    private final EmbeddingTable table;
+    private final int lists;
+    private final float[] centroids;
+    // CSR-style inverted lists: members of list c are listMembers[listOffsets[c] .. listOffsets[c + 1])
+    private final int[] listOffsets;
+    private final int[] listMembers;
+
+    private IvfIndex(EmbeddingTable table, int lists, float[] centroids, int[] listOffsets, int[] listMembers) {
+        this.table = table;
+        this.lists = lists;
+        this.centroids = centroids;
+        this.listOffsets = listOffsets;
+        this.listMembers = listMembers;
+    }
+
+    public static IvfIndex build(EmbeddingTable table, int requestedLists, int iterations, long seed) {
+        int rows = table.rows();
+        int dim = table.dim();
+        if (rows == 0) return new IvfIndex(table, 0, new float[0], new int[1], new int[0]);
+        Random random = new Random(seed);
+
+        // Train on a sample so the cost of k-means does not grow with the table
+        int[] sample = sample(rows, Math.min(rows, TRAINING_SAMPLE), random);
+        int lists = Math.max(1, Math.min(requestedLists, sample.length));
+        float[] centroids = new float[lists * dim];
+        for (int c = 0; c < lists; c++) {
+            copyRow(table, sample[c], centroids, c * dim);
+        }
+
+        int[] sampleAssignment = new int[sample.length];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            float[] current = centroids;
+            IntStream.range(0, sample.length).parallel()
+                .forEach(i -> sampleAssignment[i] = nearest(table, sample[i], current, lists));
+
+            float[] updated = new float[lists * dim];
+            int[] sizes = new int[lists];
+            for (int i = 0; i < sample.length; i++) {
+                int c = sampleAssignment[i];
+                sizes[c]++;
+                for (int k = 0; k < dim; k++) {
+                    updated[c * dim + k] += table.get(sample[i], k);
+                }
+            }
+            for (int c = 0; c < lists; c++) {
+                // An empty cluster keeps its previous centroid
+                if (sizes[c] == 0) System.arraycopy(current, c * dim, updated, c * dim, dim);
+                normalize(updated, c * dim, dim);
+            }
+            centroids = updated;
+        }
+
+        // Assign every row to its closest centroid and lay the lists out contiguously
+        float[] finalCentroids = centroids;
+        int[] assignment = new int[rows];
+        IntStream.range(0, rows).parallel()
+            .forEach(row -> assignment[row] = nearest(table, row, finalCentroids, lists));
+
+        int[] listOffsets = new int[lists + 1];
+        for (int row = 0; row < rows; row++) {
+            listOffsets[assignment[row] + 1]++;
+        }
+        for (int c = 0; c < lists; c++) {
+            listOffsets[c + 1] += listOffsets[c];
+        }
+        int[] cursor = listOffsets.clone();
+        int[] listMembers = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            listMembers[cursor[assignment[row]]++] = row;
+        }
+        return new IvfIndex(table, lists, finalCentroids, listOffsets, listMembers);
+    }
+
+    // Offers the rows of the nprobe closest lists to `top`, skipping excluded rows.
+    // `probe` is scratch space and is reset here.
+    public void search(float[] query, int nprobe, IntPredicate excluded, TopKSelector probe, TopKSelector top) {
+        int dim = table.dim();
+        probe.reset(Math.min(nprobe, lists));
+        for (int c = 0; c < lists; c++) {
+            float dot = 0;
+            for (int k = 0; k < dim; k++) {
+                dot += centroids[c * dim + k] * query[k];
+            }
+            probe.offer(c, dot);
+        }
+
+        int probed = probe.size();
+        for (int p = 0; p < probed; p++) {
+            int c = probe.id(p);
+            for (int i = listOffsets[c]; i < listOffsets[c + 1]; i++) {
+                int row = listMembers[i];
+                if (!excluded.test(row)) top.offer(row, table.dot(row, query));
+            }
+        }
+    }
+
+    public int lists() {
+        return lists;
+    }
+
+    private static int nearest(EmbeddingTable table, int row, float[] centroids, int lists) {
+        int dim = table.dim();
+        // Pull the row on-heap once instead of once per centroid
+        float[] vector = new float[dim];
+        table.copyRow(row, vector);
+        int best = 0;
+        float bestDot = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < lists; c++) {
+            float dot = 0;
+            for (int k = 0; k < dim; k++) {
+                dot += centroids[c * dim + k] * vector[k];
+            }
+            if (dot > bestDot) {
+                bestDot = dot;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static int[] sample(int rows, int size, Random random) {
+        // Partial Fisher-Yates over 0..rows-1
+        int[] all = IntStream.range(0, rows).toArray();
+        for (int i = 0; i < size; i++) {
+            int j = i + random.nextInt(rows - i);
+            int tmp = all[i];
+            all[i] = all[j];
+            all[j] = tmp;
+        }
+        int[] sample = new int[size];
+        System.arraycopy(all, 0, sample, 0, size);
+        return sample;
+    }
+
+    private static void copyRow(EmbeddingTable table, int row, float[] target, int offset) {
+        for (int k = 0; k < table.dim(); k++) {
+            target[offset + k] = table.get(row, k);
+        }
+    }
+
+    private static void normalize(float[] vectors, int offset, int dim) {
+        double norm = 0;
+        for (int k = 0; k < dim; k++) {
+            norm += vectors[offset + k] * vectors[offset + k];
+        }
+        float inv = (float) (1.0 / (Math.sqrt(norm) + 1e-8));
+        for (int k = 0; k < dim; k++) {
+            vectors[offset + k] *= inv;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.instarecommender.recommenders.gnn;
+
+import java.util.stream.IntStream;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+// LightGCN-style propagation over the CSR adjacency instead of a dense N×N matrix.
+// Embeddings are row-major float arrays (row i = user i, `dim` columns).
+// The normalized adjacency D^-1 (A + I) is never materialized: every row averages
+// itself with the rows it follows, so one layer costs O((V + E) * dim).
+public final class SparsePropagation {
+
+    private SparsePropagation() {
+    }
+
+    public static float[] propagate(CsrGraph graph, float[] features, int dim, int layers) {
+        int n = graph.vertexCount();
+        float[] current = features;
+        float[] next = new float[n * dim];
+        for (int layer = 0; layer < layers; layer++) {
+            float[] in = current;
+            float[] out = next;
+            // Rows are independent, so they are spread over all cores
+            IntStream.range(0, n).parallel().forEach(i -> {
+                int row = i * dim;
+                System.arraycopy(in, row, out, row, dim); // self-loop
+                for (int e = graph.outStart(i); e < graph.outEnd(i); e++) {
+                    int neighbor = graph.outTarget(e) * dim;
+                    for (int k = 0; k < dim; k++) {
+                        out[row + k] += in[neighbor + k];
+                    }
+                }
+                float scale = 1.0f / (graph.outDegree(i) + 1);
+                for (int k = 0; k < dim; k++) {
+                    out[row + k] *= scale;
+                }
+            });
+            next = current == features ? new float[n * dim] : current;
+            current = out;
+        }
+        return current;
+    }
+
+    // Scales every row to unit length so cosine similarity becomes a dot product
+    public static void normalizeRows(float[] embeddings, int n, int dim) {
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int row = i * dim;
+            double norm = 0;
+            for (int k = 0; k < dim; k++) {
+                norm += embeddings[row + k] * embeddings[row + k];
+            }
+            float inv = (float) (1.0 / (Math.sqrt(norm) + 1e-8));
+            for (int k = 0; k < dim; k++) {
+                embeddings[row + k] *= inv;
+            }
+        });
+    }
+}
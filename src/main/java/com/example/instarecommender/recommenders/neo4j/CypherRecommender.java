@@ -0,0 +1,109 @@
+package com.example.instarecommender.recommenders.neo4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.async.AsyncSession;
+
+import com.example.instarecommender.models.Recommendation;
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+
+// Base of the Neo4j strategies. Subclasses supply the per-user query, written against a
+// `userId` variable and returning `user` and `score` rows limited by $limit. A single call
+// binds userId from a parameter; a batch UNWINDs the ids and runs the same query as a
+// subquery per id, so a batch of users is one round trip instead of one session per user.
+// recommendAsync runs the single-user query on an AsyncSession: the calling thread returns
+// as soon as the query is sent and the driver's event loop completes the future.
+public abstract class CypherRecommender implements RecommenderStrategy {
+    protected final Driver driver;
+    private final String algorithm;
+
+    protected CypherRecommender(Driver driver, String algorithm) {
+        this.driver = driver;
+        this.algorithm = algorithm;
+    }
+
+    protected abstract String perUserQuery();
+
+    protected Map<String, Object> extraParameters() {
+        return Map.of();
+    }
+
+    @Override
+    public RecommendationResponse recommend(String userId, int limit) {
+        String query = singleUserQuery();
+        try (Session session = driver.session()) {
+            Result result = session.run(query, singleUserParameters(userId, limit));
+            List<Recommendation> recommendations = result.stream()
+                .map(this::toRecommendation)
+                .collect(Collectors.toList());
+            return new RecommendationResponse(recommendations, query);
+        }
+    }
+
+    @Override
+    public CompletableFuture<RecommendationResponse> recommendAsync(String userId, int limit) {
+        String query = singleUserQuery();
+        Map<String, Object> parameters = singleUserParameters(userId, limit);
+        AsyncSession session = driver.session(AsyncSession.class);
+        // The session is closed on both paths before the future completes, returning the connection
+        return session.runAsync(query, parameters)
+            .thenCompose(cursor -> cursor.listAsync(this::toRecommendation))
+            .handle((recommendations, error) -> session.closeAsync().thenCompose(closed -> error != null
+                ? CompletableFuture.<List<Recommendation>>failedFuture(error)
+                : CompletableFuture.completedFuture(recommendations)))
+            .thenCompose(closing -> closing)
+            .thenApply(recommendations -> new RecommendationResponse(recommendations, query))
+            .toCompletableFuture();
+    }
+
+    @Override
+    public List<RecommendationResponse> recommendBatch(List<String> users, int limit) {
+        String query =
+            "UNWIND $userIds AS userId " +
+            "CALL { WITH userId " + perUserQuery() + " } " +
+            "RETURN userId, user, score";
+        Map<String, Object> parameters = new HashMap<>(extraParameters());
+        parameters.put("userIds", users);
+        parameters.put("limit", limit);
+
+        Map<String, List<Recommendation>> byUser = new LinkedHashMap<>();
+        for (String user : users) {
+            byUser.putIfAbsent(user, new ArrayList<>());
+        }
+        try (Session session = driver.session()) {
+            session.run(query, parameters).stream().forEach(r -> byUser.get(r.get("userId").asString()).add(toRecommendation(r)));
+        }
+
+        List<RecommendationResponse> responses = new ArrayList<>(users.size());
+        for (String user : users) {
+            responses.add(new RecommendationResponse(byUser.get(user), query));
+        }
+        return responses;
+    }
+
+    private String singleUserQuery() {
+        return "WITH $userId AS userId " + perUserQuery();
+    }
+
+    private Map<String, Object> singleUserParameters(String userId, int limit) {
+        Map<String, Object> parameters = new HashMap<>(extraParameters());
+        parameters.put("userId", userId);
+        parameters.put("limit", limit);
+        return parameters;
+    }
+
+    private Recommendation toRecommendation(Record r) {
+        return new Recommendation(r.get("user").asString(), r.get("score").asDouble(), algorithm);
+    }
+}
@@ -1,75 +1,60 @@
 package com.example.instarecommender.recommenders.neo4j;
 
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.neo4j.driver.Driver;
-import org.neo4j.driver.Result;
-import org.neo4j.driver.Session;
 
-import com.example.instarecommender.models.Recommendation;
-import com.example.instarecommender.models.RecommendationResponse;
-import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+// Weighted Jaccard in one pass over the two-hop neighbourhood. It compares u's out-weights
+// with c's in-weights over the accounts f in between, as sum of min over sum of max:
+//   score(u, c) = I / (W(u) + W(c) - I), I = sum over u -> f -> c of min(w(u, f), w(f, c))
+// where W(u) is u's outgoing weight and W(c) c's incoming weight. For non-negative weights the
+// score stays in [0, 1] at any weight scale, and with all weights 1 it is the set Jaccard of
+// JaccardRecommender. Each user and each followee expands at most fanOutCap of its heaviest
+// edges, and only the candidateCap candidates with the largest intersection get their incoming
+// weight summed, which is the one per-candidate scan.
+public class Neo4jJaccardRecommender extends CypherRecommender {
 
-public class Neo4jJaccardRecommender implements RecommenderStrategy {
-    private final Driver driver;
+    private final int fanOutCap;
+    private final int candidateCap;
 
-    public Neo4jJaccardRecommender(Driver driver) {
-        this.driver = driver;
+    public Neo4jJaccardRecommender(Driver driver, int fanOutCap, int candidateCap) {
+        super(driver, "jaccard_neo4j");
+        this.fanOutCap = fanOutCap;
+        this.candidateCap = candidateCap;
     }
-    
-    private void ensureGraphProjection() {
-        try (Session session = driver.session()) {
-            Result result = session.run("RETURN gds.graph.exists('social-graph') AS exists");
-            if (result.hasNext() && !result.next().get("exists").asBoolean()) {
-                session.run("CALL gds.graph.project('social-graph', 'User', 'FOLLOWS')");
-            }
-        }
+
+    @Override
+    protected Map<String, Object> extraParameters() {
+        return Map.of("fanOutCap", fanOutCap, "candidateCap", candidateCap);
     }
 
     @Override
-    public RecommendationResponse recommend(String userId, int limit) {
-        String query =
-            // Encontrar candidatos
-            "MATCH (u:User {id: $userId})-[r1:FOLLOWS]->()-[r2:FOLLOWS]->(candidate) " +
-            "WHERE u.id <> candidate.id " +
-            
-            // Calcular interseção PONDERADA pelos pesos
-            "MATCH (u)-[r3:FOLLOWS]->(common)-[r4:FOLLOWS]->(candidate) " +
-            "WITH candidate, " +
-            "     sum(r3.weight * r4.weight) AS weightedIntersection, " +  // ← PESO!
-            "     collect(DISTINCT common) AS commonUsers " +
-            
-            // Somar todos os pesos do usuário
-            "MATCH (u:User {id: $userId})-[r5:FOLLOWS]->(userFollows) " +
-            "WITH candidate, weightedIntersection, commonUsers, " +
-            "     sum(r5.weight) AS userTotalWeight " +
-            
-            // Somar todos os pesos dos seguidores do candidato
-            "MATCH (candidate)<-[r6:FOLLOWS]-(follower) " +
-            "WITH candidate, weightedIntersection, userTotalWeight, " +
-            "     sum(r6.weight) AS candidateTotalWeight " +
-            
-            // Calcular Jaccard ponderado
-            "WITH candidate, " +
-            "     weightedIntersection / (userTotalWeight + candidateTotalWeight - weightedIntersection) AS score " +
-            
-            "WHERE score > 0 " +
+    protected String perUserQuery() {
+        return
+            // W(u) over every followee; only the heaviest fanOutCap are expanded
+            "MATCH (u:User {id: userId})-[r1:FOLLOWS]->(f) " +
+            "WITH u, f, coalesce(r1.weight, 0.0) AS w1 ORDER BY w1 DESC " +
+            "WITH u, sum(w1) AS userTotal, collect({node: f, weight: w1}) AS followees " +
+            "UNWIND followees[0..$fanOutCap] AS followee " +
+            "CALL { " +
+            "   WITH followee " +
+            "   WITH followee.node AS common " +
+            "   MATCH (common)-[r2:FOLLOWS]->(candidate) " +
+            "   WITH candidate, coalesce(r2.weight, 0.0) AS w2 ORDER BY w2 DESC LIMIT $fanOutCap " +
+            "   RETURN candidate, w2 " +
+            "} " +
+            "WITH u, userTotal, candidate, " +
+            "     sum(CASE WHEN followee.weight < w2 THEN followee.weight ELSE w2 END) AS intersection " +
+            // Only exclude if there is an explicit 'isFollowing=true' relationship
+            "WHERE candidate <> u AND NOT EXISTS { MATCH (u)-[r:FOLLOWS]->(candidate) WHERE r.isFollowing = true } " +
+            "WITH userTotal, candidate, intersection WHERE intersection > 0 " +
+            "ORDER BY intersection DESC LIMIT $candidateCap " +
+            "MATCH (candidate)<-[r3:FOLLOWS]-() " +
+            "WITH candidate, intersection, userTotal, sum(coalesce(r3.weight, 0.0)) AS candidateTotal " +
+            // intersection <= min(userTotal, candidateTotal), so the denominator is never below it
+            "WITH candidate, intersection / (userTotal + candidateTotal - intersection) AS score " +
             "RETURN candidate.id AS user, score " +
             "ORDER BY score DESC, user ASC " +
             "LIMIT $limit";
-            
-        try (Session session = driver.session()) {
-            Result result = session.run(query, Map.of("userId", userId, "limit", limit));
-            List<Recommendation> recommendations = result.stream()
-                .map(r -> new Recommendation(
-                    r.get("user").asString(),
-                    r.get("score").asDouble(),
-                    "jaccard_neo4j"
-                ))
-                .collect(Collectors.toList());
-            return new RecommendationResponse(recommendations, query);
-        }
     }
 }
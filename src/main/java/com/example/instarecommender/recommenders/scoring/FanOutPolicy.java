@@ -0,0 +1,164 @@
+package com.example.instarecommender.recommenders.scoring;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+// Bounds the friends-of-friends expansion of the neighbourhood strategies, so one hop through
+// a hub cannot blow up a request. Every limit is off at 0.
+//
+//   maxNeighborsPerHop  a row longer than this is sampled down to it, on both hops. Weighted
+//                       reservoir sampling (A-Res: keep the k largest u^(1/w)), so heavy
+//                       edges are the likeliest to stay.
+//   maxCandidates       once this many candidates exist, only those keep collecting hits
+//   superNodeDegree     followed accounts that follow more than this are not expanded at all
+//
+// The random draw for an edge is a hash of (seed, source, target), so the same graph always
+// gives the same sample and a cached result matches a fresh one.
+public final class FanOutPolicy {
+
+    // Weight each candidate reached through `friend` is scored with; negative skips the friend
+    @FunctionalInterface
+    public interface FriendWeight {
+        double of(int friend);
+    }
+
+    public static final FanOutPolicy UNLIMITED = new FanOutPolicy(0, 0, 0, 0);
+
+    private static final ThreadLocal<Sampler[]> SAMPLERS = ThreadLocal.withInitial(() -> new Sampler[] {new Sampler(), new Sampler()});
+
+    private final int maxNeighborsPerHop;
+    private final int maxCandidates;
+    private final int superNodeDegree;
+    private final long seed;
+
+    public FanOutPolicy(int maxNeighborsPerHop, int maxCandidates, int superNodeDegree, long seed) {
+        this.maxNeighborsPerHop = maxNeighborsPerHop;
+        this.maxCandidates = maxCandidates;
+        this.superNodeDegree = superNodeDegree;
+        this.seed = seed;
+    }
+
+    // Adds friendWeight(f) to every candidate c on a path u -> f -> c that is not excluded in
+    // acc, within the limits. Returns whether any limit dropped part of the neighbourhood.
+    public boolean expandTwoHops(CsrGraph graph, int u, ScoreAccumulator acc, FriendWeight friendWeight) {
+        Sampler[] samplers = SAMPLERS.get();
+        Sampler friends = samplers[0];
+        Sampler candidates = samplers[1];
+        boolean pruned = friends.select(graph, u, maxNeighborsPerHop, seed);
+        long fetches = 1;
+
+        for (int i = 0; i < friends.size(); i++) {
+            int friend = graph.outTarget(friends.slot(i));
+            if (superNodeDegree > 0 && graph.outDegree(friend) > superNodeDegree) {
+                pruned = true;
+                continue;
+            }
+            double weight = friendWeight.of(friend);
+            if (weight < 0) continue;
+
+            pruned |= candidates.select(graph, friend, maxNeighborsPerHop, seed);
+            fetches++;
+            for (int j = 0; j < candidates.size(); j++) {
+                int candidate = graph.outTarget(candidates.slot(j));
+                if (acc.isExcluded(candidate)) continue;
+                if (maxCandidates > 0 && acc.candidateCount() >= maxCandidates && !acc.isCandidate(candidate)) {
+                    pruned = true;
+                    continue;
+                }
+                acc.add(candidate, weight);
+            }
+        }
+        RecommendationTrace.current().neighborFetches(fetches);
+        return pruned;
+    }
+
+    // Out-edge slots of one row: the whole row, or a weighted sample of it
+    private static final class Sampler {
+        private double[] keys = new double[0];
+        private int[] slots = new int[0];
+        private int start;
+        private int size;
+        private boolean sampled;
+
+        // Returns true when the row was longer than k and had to be sampled
+        boolean select(CsrGraph graph, int v, int k, long seed) {
+            start = graph.outStart(v);
+            int degree = graph.outDegree(v);
+            sampled = k > 0 && degree > k;
+            if (!sampled) {
+                size = degree;
+                return false;
+            }
+            if (keys.length < k) {
+                keys = new double[k];
+                slots = new int[k];
+            }
+            // Min-heap on the key, so the root is the first to go when a larger key shows up
+            size = 0;
+            for (int e = start; e < start + degree; e++) {
+                double key = key(seed, v, graph.outTarget(e), graph.outWeight(e));
+                if (size < k) {
+                    keys[size] = key;
+                    slots[size] = e;
+                    siftUp(size++);
+                } else if (key > keys[0]) {
+                    keys[0] = key;
+                    slots[0] = e;
+                    siftDown(0);
+                }
+            }
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int slot(int i) {
+            return sampled ? slots[i] : start + i;
+        }
+
+        // log(u^(1/w)) = log(u) / w orders edges the same way and cannot underflow
+        private static double key(long seed, int from, int to, float weight) {
+            long bits = mix(seed ^ mix(((long) from << 32) | (to & 0xffffffffL)));
+            double uniform = ((bits >>> 11) + 0.5) / (1L << 53);
+            return Math.log(uniform) / Math.max(weight, Float.MIN_NORMAL);
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= keys[i]) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && keys[left] < keys[smallest]) smallest = left;
+                if (right < size && keys[right] < keys[smallest]) smallest = right;
+                if (smallest == i) return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            int slot = slots[a];
+            slots[a] = slots[b];
+            slots[b] = slot;
+        }
+    }
+}
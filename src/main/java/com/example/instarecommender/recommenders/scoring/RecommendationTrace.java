@@ -0,0 +1,87 @@
+package com.example.instarecommender.recommenders.scoring;
+
+import java.util.Arrays;
+
+// Where one recommend() call on this thread spent its time. RecommenderService starts a trace
+// before calling the strategy and reports it afterwards; strategies mark the end of each stage
+// and count what they touched. A stage that is never marked (the Neo4j strategies run all of
+// them inside one query) is reported as absent rather than as zero.
+//
+//   CANDIDATES  exclusions and candidate expansion (for neighbourhood scores this already
+//               accumulates the raw counts)
+//   SCORING     turning accumulated values into final scores, or searching precomputed ones
+//   TOP_K       selecting the best `limit` and building the response
+public final class RecommendationTrace {
+
+    public enum Stage {
+        CANDIDATES,
+        SCORING,
+        TOP_K
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final ThreadLocal<RecommendationTrace> CURRENT = ThreadLocal.withInitial(RecommendationTrace::new);
+
+    private final long[] stageNanos = new long[STAGES.length];
+    private int markedStages;
+    private long mark;
+    private int candidates;
+    private long neighborFetches;
+
+    private RecommendationTrace() {
+    }
+
+    // Resets this thread's trace and starts the clock for the first stage
+    public static RecommendationTrace start() {
+        RecommendationTrace trace = CURRENT.get();
+        Arrays.fill(trace.stageNanos, 0);
+        trace.markedStages = 0;
+        trace.candidates = -1;
+        trace.neighborFetches = 0;
+        trace.mark = System.nanoTime();
+        return trace;
+    }
+
+    // Calls outside start() (batches, benchmarks) just record into a trace nobody reads
+    public static RecommendationTrace current() {
+        return CURRENT.get();
+    }
+
+    // Charges the time since the previous mark to `stage`
+    public void endStage(Stage stage) {
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - mark;
+        markedStages |= 1 << stage.ordinal();
+        mark = now;
+    }
+
+    public void candidates(int count) {
+        candidates = count;
+    }
+
+    // One per adjacency list read
+    public void neighborFetches(long count) {
+        neighborFetches += count;
+    }
+
+    public boolean hasStage(Stage stage) {
+        return (markedStages & (1 << stage.ordinal())) != 0;
+    }
+
+    public long stageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    // -1 when the strategy did not report it
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public long getNeighborFetches() {
+        return neighborFetches;
+    }
+
+    public static Stage[] stages() {
+        return STAGES;
+    }
+}
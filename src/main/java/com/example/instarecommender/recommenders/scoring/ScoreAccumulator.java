@@ -0,0 +1,107 @@
+package com.example.instarecommender.recommenders.scoring;
+
+import java.util.Arrays;
+
+// Reusable per-thread scratch space for scoring candidates by int id.
+// Slots are invalidated with a generation counter instead of being cleared, so a request
+// only pays for the candidates it actually touches. Not reentrant: one kernel per thread at a time.
+public final class ScoreAccumulator {
+    private static final ThreadLocal<ScoreAccumulator> LOCAL = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+    private double[] scores = new double[0];
+    private int[] counts = new int[0];
+    private int[] seen = new int[0];
+    private int[] excluded = new int[0];
+    private int[] touched = new int[0];
+    private int touchedCount;
+    private int generation;
+
+    private final TopKSelector top = new TopKSelector();
+
+    private ScoreAccumulator() {
+    }
+
+    public static ScoreAccumulator acquire(int vertexCount) {
+        ScoreAccumulator acc = LOCAL.get();
+        acc.reset(vertexCount);
+        return acc;
+    }
+
+    private void reset(int vertexCount) {
+        if (scores.length < vertexCount) {
+            int capacity = Math.max(vertexCount, scores.length + (scores.length >> 1));
+            scores = new double[capacity];
+            counts = new int[capacity];
+            seen = new int[capacity];
+            excluded = new int[capacity];
+            touched = new int[capacity];
+            generation = 0;
+        }
+        touchedCount = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(excluded, 0);
+            generation = 1;
+        }
+    }
+
+    public void exclude(int v) {
+        excluded[v] = generation;
+    }
+
+    public boolean isExcluded(int v) {
+        return excluded[v] == generation;
+    }
+
+    // Adds to v's score and bumps its hit count; the first hit registers v as a candidate
+    public void add(int v, double score) {
+        if (seen[v] != generation) {
+            seen[v] = generation;
+            scores[v] = 0;
+            counts[v] = 0;
+            touched[touchedCount++] = v;
+        }
+        scores[v] += score;
+        counts[v]++;
+    }
+
+    public boolean isCandidate(int v) {
+        return seen[v] == generation;
+    }
+
+    public void setScore(int v, double score) {
+        scores[v] = score;
+    }
+
+    public double score(int v) {
+        return scores[v];
+    }
+
+    public int count(int v) {
+        return counts[v];
+    }
+
+    public int candidateCount() {
+        return touchedCount;
+    }
+
+    public int candidate(int i) {
+        return touched[i];
+    }
+
+    // Selector owned by this accumulator, reset to `limit`, for kernels that score
+    // vertices directly instead of accumulating them
+    public TopKSelector topK(int limit) {
+        return top.reset(limit);
+    }
+
+    // Offers every accumulated candidate to the top-k selector
+    public TopKSelector selectTop(int limit) {
+        top.reset(limit);
+        for (int i = 0; i < touchedCount; i++) {
+            int v = touched[i];
+            top.offer(v, scores[v]);
+        }
+        return top;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.instarecommender.recommenders.scoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.example.instarecommender.models.Recommendation;
+
+// Bounded min-heap over (int id, double score) pairs. Keeps the best `limit` entries seen,
+// ordered by score desc and then id asc, so results are deterministic on ties.
+// O(n log k) for n offers, and nothing is boxed until the final list is built. The arrays grow
+// with the entries actually kept, so a large limit over few candidates stays small.
+public final class TopKSelector {
+    private int[] ids = new int[16];
+    private double[] scores = new double[16];
+    private int size;
+    private int limit;
+
+    public TopKSelector reset(int limit) {
+        this.limit = Math.max(limit, 0);
+        size = 0;
+        return this;
+    }
+
+    public void offer(int id, double score) {
+        if (Double.isNaN(score)) return;
+        if (size < limit) {
+            if (size == ids.length) grow();
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && worse(ids[0], scores[0], id, score)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    // Lowest score currently kept, or -infinity while the heap is not full yet.
+    // Lets callers skip work for candidates that cannot make it anymore.
+    public double threshold() {
+        return size < limit ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    // Heap-sorts the kept entries in place, best first, and returns how many there are.
+    // After this call read the results with id(rank)/score(rank); offer must not be called again.
+    public int sortDescending() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int id(int rank) {
+        return ids[rank];
+    }
+
+    public double score(int rank) {
+        return scores[rank];
+    }
+
+    public List<Recommendation> toRecommendations(IntFunction<String> userAt, String algorithm) {
+        int count = sortDescending();
+        List<Recommendation> recommendations = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            recommendations.add(new Recommendation(userAt.apply(ids[rank]), scores[rank], algorithm));
+        }
+        return recommendations;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min(limit, ids.length * 2L);
+        ids = Arrays.copyOf(ids, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+
+    // true if entry a ranks below entry b
+    private static boolean worse(int idA, double scoreA, int idB, double scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(ids[i], scores[i], ids[parent], scores[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= end) break;
+            int right = left + 1;
+            int worst = right < end && worse(ids[right], scores[right], ids[left], scores[left]) ? right : left;
+            if (!worse(ids[worst], scores[worst], ids[i], scores[i])) break;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
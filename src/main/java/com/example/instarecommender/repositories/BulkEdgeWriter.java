@@ -0,0 +1,17 @@
+package com.example.instarecommender.repositories;
+
+// Sink for a bulk import. write() may be called from several loader threads at once;
+// close() is called once after the last batch and makes the imported edges visible, and
+// abort() is called instead when the import failed. Rows have addOrUpdateEdge semantics:
+// a pair seen again overwrites the earlier weight. Repeats resolve by chunk, then by the
+// order within it: a row from a higher chunk wins, and the batches of one chunk come from
+// one thread in source order.
+public interface BulkEdgeWriter extends AutoCloseable {
+    void write(EdgeBatch batch);
+
+    @Override
+    void close();
+
+    // Drops what the import has not made visible yet; later writes are ignored
+    void abort();
+}
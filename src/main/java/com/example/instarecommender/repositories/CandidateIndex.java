@@ -0,0 +1,597 @@
+package com.example.instarecommender.repositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+import org.jgrapht.Graph;
+import org.jgrapht.graph.DefaultWeightedEdge;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.IdInterner;
+
+// Materialized friends-of-friends of the users recently asked about. Per user it keeps the top
+// candidates by common-neighbour count, each with its running count and its Adamic-Adar partial
+// sum (1/log(outDegree) over the shared followed accounts, 0 for accounts following one user).
+// InMemoryGraphRepository keeps it exact under its write lock as follows are added:
+//
+//   a -> b   a gains b's followees as candidates, and b stops being one; every indexed
+//            follower x of a gains b through a, and x's candidates through a are re-weighted
+//            for a's new out-degree
+//
+// Edges are never removed, so counts only grow. A user with more candidates than fit keeps the
+// top ones, and nothing left out counts more than the smallest kept: a candidate outside the
+// table that gains a hit is recounted from the graph and swapped in when it qualifies. A table
+// that shrinks as its user follows its candidates is rebuilt once it is read and too short.
+// One follow updates tables for at most maxUpdateWork edges in total; the tables it would take
+// past that are dropped instead, and rebuilt on their next read.
+//
+// A table is built on first read from the published view, without any lock, then caught up
+// with the follows added since that view, which the writer also appends to a bounded log.
+// When the log no longer reaches back to the view (or catching up costs more than
+// maxUpdateWork) the read is not answered and the caller traverses the graph instead.
+// Tables are evicted least recently read first over the memory budget.
+public class CandidateIndex {
+
+    public enum Answer {
+        // Nothing visited: the caller has to traverse the graph
+        UNAVAILABLE,
+        // Every candidate of the user was visited
+        COMPLETE,
+        // Only the top candidates by common-neighbour count were visited
+        TRUNCATED
+    }
+
+    @FunctionalInterface
+    public interface CandidateVisitor {
+        void accept(int candidate, int commonNeighbors, double adamicAdar);
+    }
+
+    // Follows kept for catching up builds; about 200 ms of writes at a fast ingest rate
+    private static final int MAX_LOG_SIZE = 1 << 16;
+
+    private final Graph<String, DefaultWeightedEdge> graph;
+    private final IdInterner ids;
+    private final int maxCandidatesPerUser;
+    private final long maxBytes;
+    private final long maxUpdateWork;
+
+    // All state below is guarded by `this`. Insertion order is read order (reads re-insert).
+    private final LinkedHashMap<Integer, Table> tables = new LinkedHashMap<>();
+    private long bytes;
+    private long hits;
+    private long builds;
+    private long evictions;
+    private long dropped;
+    private long fallbacks;
+    // Latest published view, and the log position of the first follow it does not contain
+    private CsrGraph view;
+    private long viewPosition;
+    // Follows (from << 32 | to) at log positions logStart .. logStart + logSize - 1
+    private long[] log = new long[1024];
+    private long logStart;
+    private int logSize;
+    // Builds still reading an older view hold the log back until the next publish
+    private int buildsRunning;
+    // Bumped by clear(), which invalidates the ids of any build that is running
+    private long generation;
+
+    CandidateIndex(Graph<String, DefaultWeightedEdge> graph, IdInterner ids, CsrGraph view,
+                   int maxCandidatesPerUser, long maxBytes, long maxUpdateWork) {
+        this.graph = graph;
+        this.ids = ids;
+        this.view = view;
+        this.maxCandidatesPerUser = maxCandidatesPerUser;
+        this.maxBytes = maxBytes;
+        this.maxUpdateWork = maxUpdateWork;
+    }
+
+    // Visits the indexed candidates of `user`, in no particular order. UNAVAILABLE for unknown
+    // users, for a truncated table shorter than limit, and when a table could not be built.
+    public Answer visit(String user, int limit, CandidateVisitor visitor) {
+        int u = ids.indexOf(user);
+        if (u < 0) return Answer.UNAVAILABLE;
+        CsrGraph base;
+        long position;
+        long built;
+        synchronized (this) {
+            Table table = touch(u, limit);
+            if (table != null) return table.visit(limit, visitor);
+            base = view;
+            position = viewPosition;
+            built = generation;
+            buildsRunning++;
+        }
+        try {
+            Overlay overlay = new Overlay(base);
+            Table table = build(overlay, u);
+            long work = 0;
+            while (true) {
+                long[] added;
+                synchronized (this) {
+                    if (generation != built || position < logStart) {
+                        fallbacks++;
+                        return Answer.UNAVAILABLE;
+                    }
+                    Table existing = touch(u, limit);
+                    if (existing != null) return existing.visit(limit, visitor);
+                    long end = logStart + logSize;
+                    if (position == end) {
+                        if (table.size > maxCandidatesPerUser) table = table.top(maxCandidatesPerUser);
+                        tables.put(u, table);
+                        bytes += table.bytes();
+                        builds++;
+                        evictOverBudget();
+                        return table.visit(limit, visitor);
+                    }
+                    added = Arrays.copyOfRange(log, (int) (position - logStart), (int) (end - logStart));
+                    position = end;
+                }
+                work = catchUp(table, u, overlay, added, work);
+                if (work < 0) {
+                    synchronized (this) {
+                        fallbacks++;
+                    }
+                    return Answer.UNAVAILABLE;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                buildsRunning--;
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", tables.size());
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxCandidatesPerUser", maxCandidatesPerUser);
+        stats.put("hits", hits);
+        stats.put("builds", builds);
+        stats.put("evictions", evictions);
+        stats.put("droppedOverUpdateWork", dropped);
+        stats.put("buildFallbacks", fallbacks);
+        return stats;
+    }
+
+    // Caller holds the write lock; the edge from -> to has just been created
+    synchronized void onEdgeAdded(String from, String to) {
+        int a = ids.indexOf(from);
+        int b = ids.indexOf(to);
+        append(((long) a << 32) | (b & 0xffffffffL));
+        if (tables.isEmpty()) return;
+        int degree = graph.outDegreeOf(from);
+        long budget = maxUpdateWork;
+
+        Table own = tables.get(a);
+        if (own != null) {
+            own.remove(b);
+            int targetDegree = graph.outDegreeOf(to);
+            long work = (long) targetDegree * (own.truncated ? Math.max(1, degree) : 1);
+            if (work > budget) {
+                drop(a);
+                budget = -1;
+            } else {
+                budget -= work;
+                double weight = adamicAdarWeight(targetDegree);
+                long before = own.bytes();
+                for (DefaultWeightedEdge e : graph.outgoingEdgesOf(to)) {
+                    String candidate = graph.getEdgeTarget(e);
+                    if (candidate.equals(from) || graph.containsEdge(from, candidate)) continue;
+                    hit(own, from, ids.indexOf(candidate), candidate, weight);
+                }
+                bytes += own.bytes() - before;
+            }
+        }
+
+        // Once the budget is spent, every table left to update is dropped
+        double weight = adamicAdarWeight(degree);
+        double reweight = weight - adamicAdarWeight(degree - 1);
+        for (int x : indexedFollowers(from, a)) {
+            Table table = tables.get(x);
+            String follower = ids.nameOf(x);
+            long work = 1 + (reweight != 0 ? degree : 0) + (table.truncated ? graph.outDegreeOf(follower) : 0);
+            if (work > budget) {
+                drop(x);
+                budget = -1;
+                continue;
+            }
+            budget -= work;
+            long before = table.bytes();
+            if (!follower.equals(to) && !graph.containsEdge(follower, to)) hit(table, follower, b, to, weight);
+            if (reweight != 0) {
+                for (DefaultWeightedEdge e : graph.outgoingEdgesOf(from)) {
+                    String candidate = graph.getEdgeTarget(e);
+                    if (!candidate.equals(to)) table.addToSum(ids.indexOf(candidate), reweight);
+                }
+            }
+            bytes += table.bytes() - before;
+        }
+        evictOverBudget();
+    }
+
+    // Caller holds the write lock; log position of the next follow to be added
+    synchronized long position() {
+        return logStart + logSize;
+    }
+
+    // Caller holds the write lock; `published` holds every follow logged before `position`
+    synchronized void onPublished(CsrGraph published, long position) {
+        view = published;
+        viewPosition = position;
+        if (buildsRunning == 0) trimLog(viewPosition);
+    }
+
+    // Caller holds the write lock; `empty` is the view published after clearing the store
+    synchronized void clear(CsrGraph empty) {
+        tables.clear();
+        bytes = 0;
+        view = empty;
+        logStart += logSize;
+        logSize = 0;
+        viewPosition = logStart;
+        generation++;
+    }
+
+    // A truncated table that shrank below limit (its user followed some of its candidates) is
+    // dropped here, so the read rebuilds it
+    private Table touch(int u, int limit) {
+        Table table = tables.remove(u);
+        if (table == null) return null;
+        if (table.truncated && table.size < limit && table.size < maxCandidatesPerUser) {
+            bytes -= table.bytes();
+            return null;
+        }
+        tables.put(u, table);
+        hits++;
+        return table;
+    }
+
+    private void append(long edge) {
+        if (logSize == log.length) {
+            if (log.length < MAX_LOG_SIZE) {
+                log = Arrays.copyOf(log, log.length * 2);
+            } else {
+                // Builds from older views give up; if the latest view is this far behind, so do
+                // builds from it until the next publish
+                trimLog(viewPosition);
+                if (logSize == log.length) trimLog(logStart + logSize);
+            }
+        }
+        log[logSize++] = edge;
+    }
+
+    private void trimLog(long position) {
+        int removed = (int) Math.min(Math.max(position - logStart, 0), logSize);
+        if (removed == 0) return;
+        System.arraycopy(log, removed, log, 0, logSize - removed);
+        logStart += removed;
+        logSize -= removed;
+    }
+
+    // Followers of `user` that have a table: walks whichever side is smaller
+    private List<Integer> indexedFollowers(String user, int u) {
+        List<Integer> followers = new ArrayList<>();
+        if (graph.inDegreeOf(user) <= tables.size()) {
+            for (DefaultWeightedEdge e : graph.incomingEdgesOf(user)) {
+                int x = ids.indexOf(graph.getEdgeSource(e));
+                if (tables.containsKey(x)) followers.add(x);
+            }
+        } else {
+            for (int x : tables.keySet()) {
+                if (x != u && graph.containsEdge(ids.nameOf(x), user)) followers.add(x);
+            }
+        }
+        return followers;
+    }
+
+    // One more path user -> ? -> candidate with the given Adamic-Adar weight
+    private void hit(Table table, String user, int c, String candidate, double weight) {
+        int slot = table.find(c);
+        if (slot >= 0) {
+            table.counts[slot]++;
+            table.sums[slot] += weight;
+            return;
+        }
+        if (!table.truncated) {
+            // A complete table already has every candidate, so this one is new
+            table.put(c, 1, weight);
+            if (table.size > maxCandidatesPerUser) {
+                int min = table.minSlot();
+                table.floor = table.counts[min];
+                table.remove(table.keys[min]);
+                table.truncated = true;
+            }
+            return;
+        }
+
+        // Outside a truncated table its old count is unknown, so recount it
+        int count = 0;
+        double sum = 0;
+        for (DefaultWeightedEdge e : graph.outgoingEdgesOf(user)) {
+            String friend = graph.getEdgeTarget(e);
+            if (graph.containsEdge(friend, candidate)) {
+                count++;
+                sum += adamicAdarWeight(graph.outDegreeOf(friend));
+            }
+        }
+        if (count < table.floor) return;
+        if (table.size >= maxCandidatesPerUser) {
+            int min = table.minSlot();
+            if (count < table.counts[min]) {
+                table.floor = count;
+                return;
+            }
+            table.floor = Math.max(table.floor, table.counts[min]);
+            table.remove(table.keys[min]);
+        }
+        table.put(c, count, sum);
+    }
+
+    // Complete table of u over the overlay; reads no writer state, so it runs without locks
+    private static Table build(Overlay overlay, int u) {
+        Table table = new Table(16);
+        overlay.forEachOut(u, friend -> {
+            double weight = adamicAdarWeight(overlay.outDegree(friend));
+            overlay.forEachOut(friend, candidate -> {
+                if (candidate != u && !overlay.hasEdge(u, candidate)) table.add(candidate, 1, weight);
+            });
+        });
+        return table;
+    }
+
+    // Brings a complete table of u over the overlay up to date with the follows added after it,
+    // and adds them to the overlay: the followed accounts whose rows changed have their old
+    // contribution taken out and their new one put back, and u's new followees stop being
+    // candidates. Returns the work spent so far, or -1 once it would exceed maxUpdateWork.
+    private long catchUp(Table table, int u, Overlay overlay, long[] added, long spent) {
+        Map<Integer, Integer> addedPerRow = new HashMap<>();
+        List<Integer> newFriends = new ArrayList<>();
+        for (long edge : added) {
+            int from = (int) (edge >>> 32);
+            addedPerRow.merge(from, 1, Integer::sum);
+            if (from == u) newFriends.add((int) edge);
+        }
+        List<Integer> oldFriends = new ArrayList<>();
+        for (int friend : addedPerRow.keySet()) {
+            if (overlay.hasEdge(u, friend)) oldFriends.add(friend);
+        }
+        // Old rows are walked twice (out, then back in with their new edges), new ones once
+        long work = spent;
+        for (int friend : oldFriends) {
+            work += 2L * overlay.outDegree(friend) + addedPerRow.get(friend);
+        }
+        for (int friend : newFriends) {
+            work += overlay.outDegree(friend) + addedPerRow.getOrDefault(friend, 0);
+        }
+        if (work > maxUpdateWork) return -1;
+
+        for (int friend : oldFriends) {
+            double weight = adamicAdarWeight(overlay.outDegree(friend));
+            overlay.forEachOut(friend, candidate -> {
+                if (candidate != u && !overlay.hasEdge(u, candidate)) table.add(candidate, -1, -weight);
+            });
+        }
+        for (long edge : added) {
+            overlay.add((int) (edge >>> 32), (int) edge);
+        }
+        for (int friend : newFriends) {
+            table.remove(friend);
+        }
+        List<Integer> friends = new ArrayList<>(oldFriends);
+        friends.addAll(newFriends);
+        for (int friend : friends) {
+            double weight = adamicAdarWeight(overlay.outDegree(friend));
+            overlay.forEachOut(friend, candidate -> {
+                if (candidate != u && !overlay.hasEdge(u, candidate)) table.add(candidate, 1, weight);
+            });
+        }
+        return work;
+    }
+
+    private void drop(int user) {
+        Table table = tables.remove(user);
+        if (table != null) {
+            bytes -= table.bytes();
+            dropped++;
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Table> eldest = tables.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    // Same weighting as AdamicAdarRecommender, which skips accounts that follow a single user
+    private static double adamicAdarWeight(int outDegree) {
+        return outDegree <= 1 ? 0 : 1.0 / Math.log(outDegree);
+    }
+
+    // A published view plus the follows added since, for building and catching up tables
+    private static final class Overlay {
+        private final CsrGraph base;
+        private final Map<Integer, List<Integer>> addedRows = new HashMap<>();
+        private final Set<Long> addedEdges = new HashSet<>();
+
+        Overlay(CsrGraph base) {
+            this.base = base;
+        }
+
+        void add(int from, int to) {
+            addedRows.computeIfAbsent(from, k -> new ArrayList<>()).add(to);
+            addedEdges.add(((long) from << 32) | (to & 0xffffffffL));
+        }
+
+        int outDegree(int v) {
+            List<Integer> added = addedRows.get(v);
+            return (v < base.vertexCount() ? base.outDegree(v) : 0) + (added == null ? 0 : added.size());
+        }
+
+        boolean hasEdge(int from, int to) {
+            return base.hasEdge(from, to) || (!addedEdges.isEmpty() && addedEdges.contains(((long) from << 32) | (to & 0xffffffffL)));
+        }
+
+        void forEachOut(int v, IntConsumer action) {
+            if (v < base.vertexCount()) {
+                for (int i = base.outStart(v); i < base.outEnd(v); i++) {
+                    action.accept(base.outTarget(i));
+                }
+            }
+            List<Integer> added = addedRows.get(v);
+            if (added != null) added.forEach(action::accept);
+        }
+    }
+
+    // Open-addressing map from candidate id to (count, sum) in parallel primitive arrays
+    private static final class Table {
+        private static final int EMPTY = -1;
+
+        int[] keys;
+        int[] counts;
+        double[] sums;
+        int size;
+        // Holds only the top candidates; see the class comment for what that guarantees
+        boolean truncated;
+        // Of a truncated table: no candidate left out counts more, and none kept counts less
+        int floor;
+
+        Table(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            counts = new int[capacity];
+            sums = new double[capacity];
+        }
+
+        Answer visit(int limit, CandidateVisitor visitor) {
+            if (truncated && limit > size) return Answer.UNAVAILABLE;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) visitor.accept(keys[i], counts[i], sums[i]);
+            }
+            return truncated ? Answer.TRUNCATED : Answer.COMPLETE;
+        }
+
+        int find(int key) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) return i;
+            }
+            return -1;
+        }
+
+        void put(int key, int count, double sum) {
+            if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            counts[i] = count;
+            sums[i] = sum;
+            size++;
+        }
+
+        // Adds to the entry of key, creating it if needed and removing it when its count drops to 0
+        void add(int key, int count, double sum) {
+            int slot = find(key);
+            if (slot < 0) {
+                put(key, count, sum);
+            } else if ((counts[slot] += count) == 0) {
+                remove(key);
+            } else {
+                sums[slot] += sum;
+            }
+        }
+
+        void addToSum(int key, double delta) {
+            int slot = find(key);
+            if (slot >= 0) sums[slot] += delta;
+        }
+
+        // Backward-shift deletion, so lookups never need tombstones
+        void remove(int key) {
+            int slot = find(key);
+            if (slot < 0) return;
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                int home = mix(keys[i]) & mask;
+                // Move the entry into the hole unless its home lies cyclically in (hole, i]
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    counts[hole] = counts[i];
+                    sums[hole] = sums[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = EMPTY;
+            size--;
+        }
+
+        // Slot with the lowest count (highest id on ties), -1 when empty
+        int minSlot() {
+            int min = -1;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == EMPTY) continue;
+                if (min < 0 || counts[i] < counts[min] || (counts[i] == counts[min] && keys[i] > keys[min])) min = i;
+            }
+            return min;
+        }
+
+        // New truncated table with the `limit` highest counts, lower ids first on ties
+        Table top(int limit) {
+            long[] order = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) order[n++] = ((long) (Integer.MAX_VALUE - counts[i]) << 32) | keys[i];
+            }
+            Arrays.sort(order);
+            Table top = new Table(limit);
+            for (int r = 0; r < limit; r++) {
+                int slot = find((int) order[r]);
+                top.put(keys[slot], counts[slot], sums[slot]);
+            }
+            top.truncated = true;
+            top.floor = Integer.MAX_VALUE - (int) (order[limit] >>> 32);
+            return top;
+        }
+
+        long bytes() {
+            // Three parallel arrays plus the object and array headers
+            return 16L * keys.length + 64;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            double[] oldSums = sums;
+            keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            counts = new int[capacity];
+            sums = new double[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldCounts[i], oldSums[i]);
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
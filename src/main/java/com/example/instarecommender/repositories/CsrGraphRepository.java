@@ -0,0 +1,381 @@
+package com.example.instarecommender.repositories;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.IdInterner;
+import com.example.instarecommender.repositories.csr.LayeredGraph;
+
+// Compact in-memory store: users are interned to dense ints and the adjacency lives in
+// primitive CSR arrays. Every write, new edge or weight change, lands in the delta layer of a
+// LayeredGraph; a background thread merges it into a fresh CsrGraph off the lock and swaps
+// that in. A published CsrGraph is never modified, global decay included.
+public class CsrGraphRepository implements GraphRepository {
+
+    private final IdInterner ids = new IdInterner();
+    private final Object writeLock = new Object();
+    private final int compactionThreshold;
+    private final ScheduledExecutorService compactor;
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+
+    // Only the compactor thread merges, decays, rebuilds or resets it
+    private final LayeredGraph layers = new LayeredGraph(ids);
+    private volatile ViewListener viewListener;
+
+    public CsrGraphRepository(int compactionThreshold, long compactionIntervalMs) {
+        this.compactionThreshold = compactionThreshold;
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "csr-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMs, compactionIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addOrUpdateEdge(String from, String to, double weight) {
+        synchronized (writeLock) {
+            int f = ids.intern(from);
+            int t = ids.intern(to);
+            if (layers.put(f, t, (float) weight) >= compactionThreshold) requestCompaction();
+        }
+    }
+
+    @Override
+    public Set<String> getFollowing(String user) {
+        int u = ids.indexOf(user);
+        return u < 0 ? Set.of() : layers.following(u);
+    }
+
+    @Override
+    public Set<String> getFollowers(String user) {
+        int u = ids.indexOf(user);
+        return u < 0 ? Set.of() : layers.followers(u);
+    }
+
+    @Override
+    public void addUser(String user) {
+        ids.intern(user);
+    }
+
+    @Override
+    public List<Map<String, Object>> getGraphData() {
+        List<Map<String, Object>> data = new ArrayList<>();
+        layers.forEachEdge((from, to, weight) -> {
+            Map<String, Object> map = new HashMap<>();
+            map.put("from", ids.nameOf(from));
+            map.put("to", ids.nameOf(to));
+            map.put("weight", (double) weight);
+            data.add(map);
+        });
+        return data;
+    }
+
+    @Override
+    public void clear() {
+        runOnCompactor("clear", () -> {
+            synchronized (writeLock) {
+                Runnable viewPublished = cutView();
+                ids.clear();
+                layers.reset(CsrGraph.empty(ids));
+                if (viewPublished != null) viewPublished.run();
+            }
+        });
+    }
+
+    @Override
+    public boolean isGraphEmpty() {
+        return ids.size() == 0;
+    }
+
+    @Override
+    public double getConnectionWeight(String from, String to) {
+        int f = ids.indexOf(from);
+        int t = ids.indexOf(to);
+        if (f < 0 || t < 0) return 0.0;
+        float w = layers.weight(f, t);
+        return Float.isNaN(w) ? 0.0 : w;
+    }
+
+    @Override
+    public void updateConnectionWeight(String from, String to, double newWeight) {
+        addOrUpdateEdge(from, to, newWeight);
+    }
+
+    @Override
+    public void applyWeightUpdates(List<WeightUpdate> updates) {
+        // One lock acquisition for the whole batch, and no write can slip in between read and write
+        synchronized (writeLock) {
+            for (WeightUpdate update : updates) {
+                double current = getConnectionWeight(update.getFrom(), update.getTo());
+                addOrUpdateEdge(update.getFrom(), update.getTo(), update.apply(current));
+            }
+        }
+    }
+
+    // Swaps in a base that shares its arrays with the old one; O(1) plus the buffered writes
+    @Override
+    public void applyGlobalDecay(double factor) {
+        runOnCompactor("global decay", () -> {
+            synchronized (writeLock) {
+                Runnable viewPublished = cutView();
+                layers.scale((float) factor);
+                if (viewPublished != null) viewPublished.run();
+            }
+        });
+    }
+
+    // Imported rows are interned and appended to flat arrays; close() builds one CsrGraph
+    // from them in a single pass instead of pushing every edge through the delta buffer.
+    // Names interned by an aborted import stay known, but none of its edges are published.
+    @Override
+    public BulkEdgeWriter openBulkWriter() {
+        return new BulkEdgeWriter() {
+            private int[] from = new int[1024];
+            private int[] to = new int[1024];
+            private float[] weight = new float[1024];
+            private int size;
+            // {chunk, offset, length} of every batch in the arrays, in arrival order
+            private final List<int[]> segments = new ArrayList<>();
+            private boolean done;
+
+            @Override
+            public void write(EdgeBatch batch) {
+                int n = batch.size();
+                int[] f = new int[n];
+                int[] t = new int[n];
+                for (int i = 0; i < n; i++) {
+                    f[i] = ids.intern(batch.from(i));
+                    t[i] = ids.intern(batch.to(i));
+                }
+                synchronized (this) {
+                    if (done) return;
+                    segments.add(new int[] {batch.chunk(), size, n});
+                    if (size + n > from.length) {
+                        int capacity = Math.max(from.length * 2, size + n);
+                        from = Arrays.copyOf(from, capacity);
+                        to = Arrays.copyOf(to, capacity);
+                        weight = Arrays.copyOf(weight, capacity);
+                    }
+                    System.arraycopy(f, 0, from, size, n);
+                    System.arraycopy(t, 0, to, size, n);
+                    for (int i = 0; i < n; i++) {
+                        weight[size + i] = (float) batch.weight(i);
+                    }
+                    size += n;
+                }
+            }
+
+            @Override
+            public synchronized void close() {
+                if (done) return;
+                inChunkOrder();
+                runOnCompactor("bulk load", () -> publishBulk(from, to, weight, size));
+                release();
+            }
+
+            @Override
+            public synchronized void abort() {
+                release();
+            }
+
+            private void release() {
+                done = true;
+                from = to = new int[0];
+                weight = new float[0];
+                size = 0;
+                segments.clear();
+            }
+
+            // The build lets later rows win, so rows go in chunk order; the segments of one
+            // chunk already are, and a stable sort keeps them that way
+            private void inChunkOrder() {
+                boolean sorted = true;
+                for (int i = 1; i < segments.size() && sorted; i++) {
+                    sorted = segments.get(i - 1)[0] <= segments.get(i)[0];
+                }
+                if (sorted) return;
+                segments.sort(Comparator.comparingInt(s -> s[0]));
+                int[] f = new int[size];
+                int[] t = new int[size];
+                float[] w = new float[size];
+                int e = 0;
+                for (int[] s : segments) {
+                    System.arraycopy(from, s[1], f, e, s[2]);
+                    System.arraycopy(to, s[1], t, e, s[2]);
+                    System.arraycopy(weight, s[1], w, e, s[2]);
+                    e += s[2];
+                }
+                from = f;
+                to = t;
+                weight = w;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Set<String>> getAllConnections() {
+        Map<String, Set<String>> adjacency = new HashMap<>();
+        for (int v = 0; v < ids.size(); v++) {
+            adjacency.put(ids.nameOf(v), new HashSet<>());
+        }
+        layers.forEachEdge((from, to, weight) ->
+            adjacency.computeIfAbsent(ids.nameOf(from), k -> new HashSet<>()).add(ids.nameOf(to)));
+        return adjacency;
+    }
+
+    @Override
+    public boolean supportsSnapshots() {
+        return true;
+    }
+
+    @Override
+    public boolean snapshotLags() {
+        return true;
+    }
+
+    @Override
+    public void setViewListener(ViewListener listener) {
+        this.viewListener = listener;
+    }
+
+    // The compacted base only: edges still sitting in the delta buffer become visible to
+    // snapshot readers after the next compaction, so staleness is bounded by the interval.
+    @Override
+    public Optional<CsrGraph> snapshot() {
+        return Optional.of(layers.base());
+    }
+
+    // Folds the delta buffer into the base first, so afterwards snapshot() holds every write
+    // made before the call, users added without edges included. Bases are never modified
+    // once published, so the result needs no copy.
+    @Override
+    public CsrGraph checkpoint() {
+        runOnCompactor("checkpoint", this::compact);
+        return layers.base();
+    }
+
+    // The image was written from a CsrGraph, so it can become the base as it is once the
+    // users are interned in the same order
+    @Override
+    public void restore(CsrGraph graph) {
+        runOnCompactor("restore", () -> {
+            synchronized (writeLock) {
+                if (ids.size() != 0) throw new IllegalStateException("restore needs an empty store");
+                Runnable viewPublished = cutView();
+                for (int v = 0; v < graph.vertexCount(); v++) {
+                    ids.intern(graph.userAt(v));
+                }
+                layers.reset(graph.rebind(ids));
+                if (viewPublished != null) viewPublished.run();
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Object> getStorageStats() {
+        int pending = layers.pendingEdges();
+        CsrGraph g = layers.base();
+        long edges = g.edgeCount() + pending;
+        long csrBytes = g.estimatedBytes();
+        // ~2 boxed map entries per buffered edge (out and in index)
+        long deltaBytes = pending * 2L * 64;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("storageType", "csr");
+        stats.put("vertices", ids.size());
+        stats.put("edges", edges);
+        stats.put("pendingEdges", pending);
+        stats.put("adjacencyBytes", csrBytes + deltaBytes);
+        stats.put("idTableBytes", ids.estimatedBytes());
+        stats.put("bytesPerEdge", edges == 0 ? 0.0 : (double) (csrBytes + deltaBytes) / edges);
+        // For comparison only: an assumption, unlike the figures above, which come from the array sizes
+        stats.put("assumedJgraphtBytesPerEdge", InMemoryGraphRepository.ESTIMATED_BYTES_PER_EDGE);
+        return stats;
+    }
+
+    @Override
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    // Runs on the compactor thread so it can never overlap a merge that is copying the base
+    private void runOnCompactor(String operation, Runnable task) {
+        try {
+            compactor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + operation, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(operation + " failed", e.getCause());
+        }
+    }
+
+    // Rebuilds the base from the current edges followed by the imported ones, so imported
+    // rows override existing weights; writes buffered meanwhile are newer and go last.
+    private void publishBulk(int[] from, int[] to, float[] weight, int count) {
+        synchronized (writeLock) {
+            Runnable viewPublished = cutView();
+            layers.reset(layers.rebuild(from, to, weight, count));
+            if (viewPublished != null) viewPublished.run();
+        }
+    }
+
+    private void requestCompaction() {
+        if (compactionQueued.compareAndSet(false, true)) {
+            compactor.execute(this::compactQuietly);
+        }
+    }
+
+    private void compactQuietly() {
+        compactionQueued.set(false);
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] CSR compaction failed: " + e.getMessage());
+        }
+    }
+
+    void compact() {
+        Runnable viewPublished;
+        Supplier<CsrGraph> next;
+        synchronized (writeLock) {
+            // With nothing buffered and no new users the current base is the view that holds every write
+            viewPublished = cutView();
+            if (!layers.hasPending()) {
+                if (viewPublished != null) viewPublished.run();
+                return;
+            }
+            next = layers.freeze();
+        }
+
+        CsrGraph merged = next.get();
+
+        synchronized (writeLock) {
+            layers.install(merged);
+        }
+        if (viewPublished != null) viewPublished.run();
+    }
+
+    // Caller holds writeLock
+    private Runnable cutView() {
+        ViewListener listener = viewListener;
+        return listener == null ? null : listener.cut();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.instarecommender.repositories;
+
+// Fixed-capacity block of (from, to, weight) rows handed from the bulk loader to a
+// BulkEdgeWriter. Parallel arrays rather than one object per row. chunk is the position in
+// the source of the part the rows were read from, which decides between repeats of a pair.
+public class EdgeBatch {
+    private final String[] from;
+    private final String[] to;
+    private final double[] weight;
+    private final int chunk;
+    private int size;
+
+    public EdgeBatch(int capacity) {
+        this(capacity, 0);
+    }
+
+    public EdgeBatch(int capacity, int chunk) {
+        this.from = new String[capacity];
+        this.to = new String[capacity];
+        this.weight = new double[capacity];
+        this.chunk = chunk;
+    }
+
+    public void add(String from, String to, double weight) {
+        this.from[size] = from;
+        this.to[size] = to;
+        this.weight[size] = weight;
+        size++;
+    }
+
+    public String from(int i) {
+        return from[i];
+    }
+
+    public String to(int i) {
+        return to[i];
+    }
+
+    public double weight(int i) {
+        return weight[i];
+    }
+
+    public int chunk() {
+        return chunk;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return from.length;
+    }
+
+    public boolean isFull() {
+        return size == from.length;
+    }
+}
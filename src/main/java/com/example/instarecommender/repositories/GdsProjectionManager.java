@@ -0,0 +1,179 @@
+package com.example.instarecommender.repositories;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Owns the GDS in-memory projection of the FOLLOWS graph. Writes only mark it dirty; it is
+// rebuilt at most once per minIntervalMs, or sooner once maxPendingMutations writes piled up.
+// Each rebuild goes to a new versioned name and is swapped in when ready, and the previous
+// projection is dropped after a grace period, so running GDS calls never see a missing graph.
+public class GdsProjectionManager {
+
+    public static final String BASE_NAME = "social-graph";
+
+    private final Driver driver;
+    private final long minIntervalMs;
+    private final int maxPendingMutations;
+    private final long dropGraceMs;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong pendingMutations = new AtomicLong();
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final Timer rebuilds;
+    private final Timer failedRebuilds;
+
+    private volatile String currentName;
+    private volatile long lastBuiltAt;
+
+    public GdsProjectionManager(Driver driver, MeterRegistry meterRegistry, long minIntervalMs,
+                                int maxPendingMutations, long dropGraceMs) {
+        this.driver = driver;
+        this.minIntervalMs = minIntervalMs;
+        this.maxPendingMutations = maxPendingMutations;
+        this.dropGraceMs = dropGraceMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gds-projection");
+            t.setDaemon(true);
+            return t;
+        });
+        this.rebuilds = Timer.builder("gds.projection.rebuild")
+            .description("GDS projection builds")
+            .tag("outcome", "success")
+            .register(meterRegistry);
+        this.failedRebuilds = Timer.builder("gds.projection.rebuild")
+            .description("GDS projection builds")
+            .tag("outcome", "failure")
+            .register(meterRegistry);
+        Gauge.builder("gds.projection.pending.mutations", pendingMutations, AtomicLong::get)
+            .description("Writes not yet visible in the GDS projection")
+            .register(meterRegistry);
+    }
+
+    // Name of the projection queries should run against; builds the first one if needed
+    public String currentName() {
+        String name = currentName;
+        if (name != null) return name;
+        synchronized (this) {
+            return currentName != null ? currentName : rebuild();
+        }
+    }
+
+    public long getVersion() {
+        return versions.get();
+    }
+
+    public long getPendingMutations() {
+        return pendingMutations.get();
+    }
+
+    public void markDirty() {
+        markDirty(1);
+    }
+
+    public void markDirty(int mutations) {
+        long pending = pendingMutations.addAndGet(mutations);
+        if (pending >= maxPendingMutations && pending - mutations < maxPendingMutations) {
+            // Too many writes waiting to become visible: do not wait for the interval
+            scheduler.execute(this::rebuildQuietly);
+        } else if (rebuildScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::rebuildQuietly, untilNextBuildMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized String rebuild() {
+        rebuildScheduled.set(false);
+        long pending = pendingMutations.getAndSet(0);
+        String previous = currentName;
+        String name = BASE_NAME + "-v" + versions.incrementAndGet();
+        long started = System.nanoTime();
+        try (Session session = driver.session()) {
+            if (previous == null) dropLeftovers(session);
+            System.out.println("[GDS] Creating projection " + name + "...");
+            session.run("""
+                CALL gds.graph.project(
+                    $name,
+                    'User',
+                    {
+                        FOLLOWS: {
+                            type: 'FOLLOWS',
+                            orientation: 'NATURAL'
+                        }
+                    }
+                )
+            """, Map.of("name", name)).consume();
+        } catch (RuntimeException e) {
+            // Keep serving the old projection and retry on the next write
+            pendingMutations.addAndGet(pending);
+            failedRebuilds.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        rebuilds.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        currentName = name;
+        lastBuiltAt = System.currentTimeMillis();
+        System.out.println("[GDS] Projection " + name + " ready (" + pending + " mutations since last build)");
+        if (previous != null) {
+            scheduler.schedule(() -> drop(previous), dropGraceMs, TimeUnit.MILLISECONDS);
+        }
+        return name;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private long untilNextBuildMs() {
+        return Math.max(0, lastBuiltAt + minIntervalMs - System.currentTimeMillis());
+    }
+
+    private void rebuildQuietly() {
+        long pending = pendingMutations.get();
+        if (currentName != null && pending == 0) {
+            // An earlier run already picked these mutations up
+            rebuildScheduled.set(false);
+            return;
+        }
+        long wait = untilNextBuildMs();
+        if (wait > 0 && pending < maxPendingMutations) {
+            scheduler.schedule(this::rebuildQuietly, wait, TimeUnit.MILLISECONDS);
+            return;
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] Failed to rebuild GDS projection: " + e.getMessage());
+        }
+    }
+
+    private void drop(String name) {
+        try (Session session = driver.session()) {
+            session.run("CALL gds.graph.drop($name, false)", Map.of("name", name)).consume();
+            System.out.println("[GDS] Dropped projection " + name);
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] Failed to drop GDS projection " + name + ": " + e.getMessage());
+        }
+    }
+
+    // Projections left behind by a previous run; version numbers restart at 1
+    private void dropLeftovers(Session session) {
+        List<String> names = session.run("CALL gds.graph.list() YIELD graphName RETURN graphName")
+            .list(r -> r.get("graphName").asString());
+        for (String name : names) {
+            if (name.equals(BASE_NAME) || name.startsWith(BASE_NAME + "-v")) {
+                System.out.println("[GDS] Dropping old projection " + name + "...");
+                session.run("CALL gds.graph.drop($name, false)", Map.of("name", name)).consume();
+            }
+        }
+    }
+}
@@ -1,10 +1,24 @@
 package com.example.instarecommender.repositories;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
 
 public interface GraphRepository {
+    // Chunk size the default bulk operations use for the batched reads below
+    int READ_BATCH_SIZE = 1000;
+
     void addOrUpdateEdge(String from, String to, double weight);
     Set<String> getFollowing(String user);
     Set<String> getFollowers(String user);
@@ -15,9 +29,150 @@ public interface GraphRepository {
     double getConnectionWeight(String from, String to);
     void updateConnectionWeight(String from, String to, double weight);
     Map<String, Set<String>> getAllConnections();
+    // Batched neighbour reads: one entry per requested user, empty when the user is unknown.
+    // The defaults call the single-user methods in a loop, which is fine in process; remote
+    // stores should answer the whole collection in one round trip.
+    default Map<String, Set<String>> getFollowingBatch(Collection<String> users) {
+        Map<String, Set<String>> following = new LinkedHashMap<>();
+        for (String user : users) {
+            following.put(user, getFollowing(user));
+        }
+        return following;
+    }
+    default Map<String, Set<String>> getFollowersBatch(Collection<String> users) {
+        Map<String, Set<String>> followers = new LinkedHashMap<>();
+        for (String user : users) {
+            followers.put(user, getFollowers(user));
+        }
+        return followers;
+    }
+    // Outgoing edge weights of each user, keyed by the followed user
+    default Map<String, Map<String, Double>> getWeightsBatch(Collection<String> users) {
+        Map<String, Map<String, Double>> weights = new LinkedHashMap<>();
+        for (String user : users) {
+            Map<String, Double> out = new HashMap<>();
+            for (String to : getFollowing(user)) {
+                out.put(to, getConnectionWeight(user, to));
+            }
+            weights.put(user, out);
+        }
+        return weights;
+    }
+    // Applies a batch of relative weight updates; each pair appears at most once.
+    // Backends that can do it in one round trip should override this.
+    default void applyWeightUpdates(List<WeightUpdate> updates) {
+        Set<String> sources = new LinkedHashSet<>();
+        updates.forEach(update -> sources.add(update.getFrom()));
+        Map<String, Map<String, Double>> current = getWeightsBatch(sources);
+        for (WeightUpdate update : updates) {
+            double weight = current.getOrDefault(update.getFrom(), Map.of()).getOrDefault(update.getTo(), 0.0);
+            updateConnectionWeight(update.getFrom(), update.getTo(), update.apply(weight));
+        }
+    }
+    // Multiplies every edge weight by factor (0 < factor <= 1). The default reads the weights
+    // in batches but still writes one edge at a time; backends should override it with a
+    // single bulk operation.
+    default void applyGlobalDecay(double factor) {
+        List<String> users = new ArrayList<>(getAllConnections().keySet());
+        for (int i = 0; i < users.size(); i += READ_BATCH_SIZE) {
+            getWeightsBatch(users.subList(i, Math.min(i + READ_BATCH_SIZE, users.size())))
+                .forEach((from, out) -> out.forEach((to, weight) -> updateConnectionWeight(from, to, weight * factor)));
+        }
+    }
+    // getFollowing for callers that must not block, such as a driver's event loop. The
+    // default reads inline, which suits the stores that answer from memory.
+    default CompletableFuture<Set<String>> getFollowingAsync(String user) {
+        try {
+            return CompletableFuture.completedFuture(getFollowing(user));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    // Bulk import entry point. The default holds the batches until close() and then funnels
+    // every row through addOrUpdateEdge one at a time, in chunk order; stores that can build
+    // their structures or write in batches should override it.
+    default BulkEdgeWriter openBulkWriter() {
+        return new BulkEdgeWriter() {
+            private List<EdgeBatch> batches = new ArrayList<>();
+
+            @Override
+            public synchronized void write(EdgeBatch batch) {
+                if (batches != null) batches.add(batch);
+            }
+
+            @Override
+            public synchronized void close() {
+                if (batches == null) return;
+                // Stable, so the batches of one chunk keep their order
+                batches.sort(Comparator.comparingInt(EdgeBatch::chunk));
+                for (EdgeBatch batch : batches) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        addOrUpdateEdge(batch.from(i), batch.to(i), batch.weight(i));
+                    }
+                }
+                batches = null;
+            }
+
+            @Override
+            public synchronized void abort() {
+                batches = null;
+            }
+        };
+    }
     default boolean supportsGds() {
         return false;
     }
     default void createGdsProjection() {
     }
+    default boolean supportsSnapshots() {
+        return false;
+    }
+    // Writes survive a restart without the local snapshot and mutation log
+    default boolean isDurable() {
+        return false;
+    }
+    // snapshot() can miss recent writes; such stores report each view they publish to the
+    // listener, the others never call it
+    default boolean snapshotLags() {
+        return false;
+    }
+    default void setViewListener(ViewListener listener) {
+    }
+    // The view the in-memory recommenders score against; empty for stores that keep no CSR
+    // view, which report supportsSnapshots() false
+    default Optional<CsrGraph> snapshot() {
+        return Optional.empty();
+    }
+    // The whole graph for persistence: unlike snapshot() it includes edges that are still
+    // buffered. CsrGraphs never change, so it stays as it is when the store is written to.
+    CsrGraph checkpoint();
+    // Loads a graph read back from a checkpoint into an empty store
+    default void restore(CsrGraph graph) {
+        for (int v = 0; v < graph.vertexCount(); v++) {
+            addUser(graph.userAt(v));
+        }
+        try (BulkEdgeWriter writer = openBulkWriter()) {
+            EdgeBatch batch = new EdgeBatch(Math.max(1, Math.min(graph.edgeCount(), 10000)));
+            for (int v = 0; v < graph.vertexCount(); v++) {
+                for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+                    batch.add(graph.userAt(v), graph.userAt(graph.outTarget(e)), graph.outWeight(e));
+                    if (batch.isFull()) {
+                        writer.write(batch);
+                        batch = new EdgeBatch(batch.capacity());
+                    }
+                }
+            }
+            if (batch.size() > 0) writer.write(batch);
+        }
+    }
+    // Precomputed friends-of-friends, or null when the store does not keep one
+    default CandidateIndex candidateIndex() {
+        return null;
+    }
+    default Map<String, Object> getStorageStats() {
+        return Map.of("storageType", getClass().getSimpleName());
+    }
+    // Stops background threads; called when the application context closes
+    default void shutdown() {
+    }
 }
@@ -0,0 +1,412 @@
+package com.example.instarecommender.repositories;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Neo4j stays the source of truth and every write goes there first; an in-memory replica
+// answers every read, so the in-memory strategies (GNN included) run on durable storage.
+// Writes reach the replica right after the primary accepts them. Writes are serialized per
+// source user only, so both stores see the edges of one user in the same order while writes
+// for other users go ahead; decay and clear, which touch every edge, wait for all of them.
+// A periodic reconciliation rebuilds the replica from the primary and swaps it in, which
+// repairs any drift (a write that failed between the two, or one made by another instance).
+public class HybridGraphRepository implements GraphRepository {
+
+    private static final int WRITE_STRIPES = 256;
+
+    private final GraphRepository primary;
+    private final Supplier<GraphRepository> replicaFactory;
+    private final ScheduledExecutorService reconciler;
+    private final Timer reconciliations;
+    private final Timer failedReconciliations;
+    private final AtomicLong caughtUpUsers = new AtomicLong();
+    // Shared by the per-user writes, exclusive for decay, clear and swapping the replica
+    private final ReentrantReadWriteLock writeGate = new ReentrantReadWriteLock();
+    // A write holds the stripes of its source users across both stores, taken in index order
+    private final ReentrantLock[] writeStripes = new ReentrantLock[WRITE_STRIPES];
+
+    private volatile GraphRepository replica;
+    // Forwards the views the current replica publishes; a rebuilt replica's views are only
+    // forwarded once it has been swapped in
+    private ReplicaViews replicaViews;
+    private volatile ViewListener viewListener;
+    private volatile long lastReconciledAt;
+    // Users whose edges changed while a rebuild was reading the primary, null when no rebuild
+    // is running; a decay or clear abandons the rebuild instead. Writers add their users after
+    // both stores took the write, while they still hold writeGate's read lock.
+    private volatile Set<String> touchedDuringRebuild;
+    private volatile boolean rebuildInvalidated;
+
+    public HybridGraphRepository(GraphRepository primary, Supplier<GraphRepository> replicaFactory,
+                                 MeterRegistry meterRegistry, long reconcileIntervalMs) {
+        this.primary = primary;
+        this.replicaFactory = replicaFactory;
+        for (int i = 0; i < writeStripes.length; i++) {
+            writeStripes[i] = new ReentrantLock();
+        }
+        this.reconciliations = Timer.builder("graph.replica.reconcile")
+            .description("Rebuilds of the in-memory replica from the primary store")
+            .tag("outcome", "success")
+            .register(meterRegistry);
+        this.failedReconciliations = Timer.builder("graph.replica.reconcile")
+            .description("Rebuilds of the in-memory replica from the primary store")
+            .tag("outcome", "failure")
+            .register(meterRegistry);
+
+        long started = System.currentTimeMillis();
+        this.replicaViews = new ReplicaViews();
+        this.replica = load(replicaViews);
+        replicaViews.activate();
+        this.lastReconciledAt = System.currentTimeMillis();
+        CsrGraph loaded = replica.snapshot().orElseThrow();
+        System.out.println("[INFO] Replica loaded from the primary store (" + loaded.vertexCount() + " users, "
+            + loaded.edgeCount() + " edges) in " + (lastReconciledAt - started) + " ms");
+
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-reconcile");
+            t.setDaemon(true);
+            return t;
+        });
+        if (reconcileIntervalMs > 0) {
+            reconciler.scheduleWithFixedDelay(this::reconcileQuietly, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void addOrUpdateEdge(String from, String to, double weight) {
+        write(List.of(from), List.of(from, to), () -> primary.addOrUpdateEdge(from, to, weight),
+            r -> r.addOrUpdateEdge(from, to, weight));
+    }
+
+    @Override
+    public Set<String> getFollowing(String user) {
+        return replica.getFollowing(user);
+    }
+
+    @Override
+    public Set<String> getFollowers(String user) {
+        return replica.getFollowers(user);
+    }
+
+    @Override
+    public void addUser(String user) {
+        write(List.of(user), List.of(user), () -> primary.addUser(user), r -> r.addUser(user));
+    }
+
+    @Override
+    public List<Map<String, Object>> getGraphData() {
+        return replica.getGraphData();
+    }
+
+    @Override
+    public void clear() {
+        writeGate.writeLock().lock();
+        try {
+            primary.clear();
+            replica.clear();
+            rebuildInvalidated = true;
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
+
+    // Asks the primary: on startup the replica is only as complete as what it was loaded from
+    @Override
+    public boolean isGraphEmpty() {
+        return primary.isGraphEmpty();
+    }
+
+    @Override
+    public double getConnectionWeight(String from, String to) {
+        return replica.getConnectionWeight(from, to);
+    }
+
+    @Override
+    public void updateConnectionWeight(String from, String to, double weight) {
+        write(List.of(from), List.of(from, to), () -> primary.updateConnectionWeight(from, to, weight),
+            r -> r.updateConnectionWeight(from, to, weight));
+    }
+
+    @Override
+    public Map<String, Set<String>> getAllConnections() {
+        return replica.getAllConnections();
+    }
+
+    @Override
+    public Map<String, Set<String>> getFollowingBatch(Collection<String> users) {
+        return replica.getFollowingBatch(users);
+    }
+
+    @Override
+    public Map<String, Set<String>> getFollowersBatch(Collection<String> users) {
+        return replica.getFollowersBatch(users);
+    }
+
+    @Override
+    public Map<String, Map<String, Double>> getWeightsBatch(Collection<String> users) {
+        return replica.getWeightsBatch(users);
+    }
+
+    // The updates are relative, so each store applies them to its own current weights
+    @Override
+    public void applyWeightUpdates(List<WeightUpdate> updates) {
+        Set<String> sources = new HashSet<>();
+        List<String> users = new ArrayList<>(updates.size() * 2);
+        for (WeightUpdate update : updates) {
+            sources.add(update.getFrom());
+            users.add(update.getFrom());
+            users.add(update.getTo());
+        }
+        write(sources, users, () -> primary.applyWeightUpdates(updates), r -> r.applyWeightUpdates(updates));
+    }
+
+    @Override
+    public void applyGlobalDecay(double factor) {
+        writeGate.writeLock().lock();
+        try {
+            primary.applyGlobalDecay(factor);
+            replica.applyGlobalDecay(factor);
+            rebuildInvalidated = true;
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
+
+    // Imports run on startup into an empty graph, before the first reconciliation can swap
+    // the replica this writer was opened on
+    @Override
+    public BulkEdgeWriter openBulkWriter() {
+        BulkEdgeWriter toPrimary = primary.openBulkWriter();
+        BulkEdgeWriter toReplica = replica.openBulkWriter();
+        return new BulkEdgeWriter() {
+            @Override
+            public void write(EdgeBatch batch) {
+                toPrimary.write(batch);
+                toReplica.write(batch);
+                Set<String> touched = touchedDuringRebuild;
+                if (touched != null) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        touched.add(batch.from(i));
+                        touched.add(batch.to(i));
+                    }
+                }
+            }
+
+            @Override
+            public void close() {
+                toPrimary.close();
+                toReplica.close();
+            }
+
+            // Batches the primary already committed stay there; reconciliation copies them over
+            @Override
+            public void abort() {
+                toPrimary.abort();
+                toReplica.abort();
+            }
+        };
+    }
+
+    @Override
+    public boolean supportsSnapshots() {
+        return true;
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public boolean snapshotLags() {
+        return true;
+    }
+
+    @Override
+    public void setViewListener(ViewListener listener) {
+        this.viewListener = listener;
+    }
+
+    @Override
+    public Optional<CsrGraph> snapshot() {
+        return replica.snapshot();
+    }
+
+    @Override
+    public CsrGraph checkpoint() {
+        return replica.checkpoint();
+    }
+
+    @Override
+    public Map<String, Object> getStorageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("storageType", "hybrid");
+        stats.put("primary", primary.getStorageStats());
+        stats.put("replica", replica.getStorageStats());
+        stats.put("lastReconciledAt", lastReconciledAt);
+        stats.put("reconciliations", reconciliations.count());
+        stats.put("failedReconciliations", failedReconciliations.count());
+        stats.put("caughtUpUsers", caughtUpUsers.get());
+        return stats;
+    }
+
+    @Override
+    public void shutdown() {
+        reconciler.shutdownNow();
+        replica.shutdown();
+        primary.shutdown();
+    }
+
+    // Rebuilds the replica from the primary without blocking writes while it reads, then
+    // re-reads the users written in the meantime, also without the lock. Only the users written
+    // during that catch-up are re-read with writes held back, right before the swap.
+    public boolean reconcile() {
+        // A write that finishes before this is in what load() reads; any later one sees the set
+        touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+        rebuildInvalidated = false;
+        long started = System.nanoTime();
+        GraphRepository rebuilt = null;
+        ReplicaViews views = new ReplicaViews();
+        try {
+            rebuilt = load(views);
+            Set<String> touched = touchedDuringRebuild;
+            touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+            // A writer may still add to the old set after this copy; those users are re-read below
+            List<String> caughtUp = new ArrayList<>(touched);
+            if (!caughtUp.isEmpty()) {
+                catchUp(rebuilt, caughtUp);
+                rebuilt.checkpoint();
+            }
+
+            writeGate.writeLock().lock();
+            try {
+                if (rebuildInvalidated) {
+                    System.out.println("[INFO] Replica reconciliation skipped: the graph was decayed or cleared while it was read");
+                    return false;
+                }
+                Set<String> late = new HashSet<>(touchedDuringRebuild);
+                caughtUp.forEach(touched::remove);
+                late.addAll(touched);
+                if (!late.isEmpty()) {
+                    catchUp(rebuilt, new ArrayList<>(late));
+                    // Publishes the caught-up rows before readers see the new replica
+                    rebuilt.checkpoint();
+                }
+                GraphRepository previous = replica;
+                replicaViews.retire();
+                replica = rebuilt;
+                replicaViews = views;
+                views.activate();
+                rebuilt = null;
+                previous.shutdown();
+            } finally {
+                writeGate.writeLock().unlock();
+            }
+            lastReconciledAt = System.currentTimeMillis();
+            reconciliations.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (RuntimeException e) {
+            failedReconciliations.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        } finally {
+            touchedDuringRebuild = null;
+            if (rebuilt != null) rebuilt.shutdown();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] Replica reconciliation failed, keeping the current replica: " + e.getMessage());
+        }
+    }
+
+    private GraphRepository load(ReplicaViews views) {
+        GraphRepository loaded = replicaFactory.get();
+        loaded.setViewListener(views);
+        try {
+            loaded.restore(primary.checkpoint());
+            return loaded;
+        } catch (RuntimeException e) {
+            loaded.shutdown();
+            throw e;
+        }
+    }
+
+    // Edges are never removed, so overwriting the touched users' rows with what the primary
+    // holds now brings a replica read before their writes up to date
+    private void catchUp(GraphRepository rebuilt, List<String> users) {
+        for (int i = 0; i < users.size(); i += READ_BATCH_SIZE) {
+            primary.getWeightsBatch(users.subList(i, Math.min(i + READ_BATCH_SIZE, users.size()))).forEach((user, out) -> {
+                rebuilt.addUser(user);
+                out.forEach((to, weight) -> rebuilt.addOrUpdateEdge(user, to, weight));
+            });
+        }
+        caughtUpUsers.addAndGet(users.size());
+    }
+
+    private class ReplicaViews implements ViewListener {
+        private boolean current;
+
+        @Override
+        public synchronized Runnable cut() {
+            ViewListener listener = viewListener;
+            return current && listener != null ? listener.cut() : null;
+        }
+
+        synchronized void activate() {
+            current = true;
+        }
+
+        synchronized void retire() {
+            current = false;
+        }
+    }
+
+    // Takes the stripes of `sources` in index order, so two writes never wait on each other in a cycle
+    private void write(Collection<String> sources, Collection<String> users, Runnable toPrimary,
+                       Consumer<GraphRepository> toReplica) {
+        int[] stripes = sources.stream().mapToInt(user -> Math.floorMod(user.hashCode(), WRITE_STRIPES))
+            .distinct().sorted().toArray();
+        writeGate.readLock().lock();
+        try {
+            for (int stripe : stripes) {
+                writeStripes[stripe].lock();
+            }
+            try {
+                toPrimary.run();
+                toReplica.accept(replica);
+                Set<String> touched = touchedDuringRebuild;
+                if (touched != null) touched.addAll(users);
+            } finally {
+                for (int stripe : stripes) {
+                    writeStripes[stripe].unlock();
+                }
+            }
+        } finally {
+            writeGate.readLock().unlock();
+        }
+    }
+}
@@ -1,77 +1,148 @@
 package com.example.instarecommender.repositories;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultWeightedEdge;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.IdInterner;
+import com.example.instarecommender.repositories.csr.LayeredGraph;
+
+// JGraphT-backed store with a single writer and lock-free readers. Writes mutate the JGraphT
+// graph under writeLock and also land in the delta layer of a LayeredGraph. The recommenders
+// read the published view, its immutable CsrGraph base, which the publisher thread rebuilds
+// from the last one plus the delta at most publishIntervalMs after a write: the merge runs
+// off the lock and only the reference swap takes it. A request that keeps one view sees the
+// same graph throughout. The point reads (following, followers, weights, graph dumps) go
+// through the base and the delta without locking, so they see every write that has returned.
 public class InMemoryGraphRepository implements GraphRepository {
+    // Assumed, not measured at runtime: heap cost of one edge in a
+    // SimpleDirectedWeightedGraph<String, DefaultWeightedEdge> with compressed oops (the edge
+    // object, its entry in the edge map, the (source, target) lookup pair with its map node and
+    // edge set, and the slots in both touching-edge sets). StorageFootprintBenchmark put the
+    // whole store at ~365 bytes per edge on JDK 17 (100k users, 1M edges), ~25 of them the
+    // CSR view and id table that the stats count separately.
+    public static final int ESTIMATED_BYTES_PER_EDGE = 340;
+
+    // Below this the stored weights are rescaled so they do not lose precision
+    private static final double MIN_WEIGHT_SCALE = 1e-6;
+
+    private final Object writeLock = new Object();
+    private final IdInterner ids = new IdInterner();
+    private final long publishIntervalMs;
+    private final ScheduledExecutorService publisher;
+    private final AtomicBoolean publishQueued = new AtomicBoolean();
+
+    // Writer state, guarded by writeLock
     private final Graph<String, DefaultWeightedEdge> graph = new SimpleDirectedWeightedGraph<>(DefaultWeightedEdge.class);
+    // Global decay only multiplies this factor: edges store weight / weightScale
+    private double weightScale = 1.0;
+
+    // Published view plus the writes made since; only the publisher thread merges, decays or resets it
+    private final LayeredGraph view = new LayeredGraph(ids);
+    private volatile ViewListener viewListener;
+    // Kept in step with the writer's graph; null when disabled
+    private final CandidateIndex candidateIndex;
 
-    public Graph<String, DefaultWeightedEdge> getGraph() {
-        return graph;
+    public InMemoryGraphRepository(long publishIntervalMs) {
+        this(publishIntervalMs, 0, 0, 0);
+    }
+
+    // candidatesPerUser = 0 disables the candidate index
+    public InMemoryGraphRepository(long publishIntervalMs, int candidatesPerUser, long candidateIndexMaxBytes,
+                                   long candidateIndexMaxUpdateWork) {
+        this.publishIntervalMs = publishIntervalMs;
+        this.candidateIndex = candidatesPerUser > 0
+            ? new CandidateIndex(graph, ids, view.base(), candidatesPerUser, candidateIndexMaxBytes, candidateIndexMaxUpdateWork)
+            : null;
+        this.publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "in-memory-publisher");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     @Override
     public void addOrUpdateEdge(String from, String to, double weight) {
-        graph.addVertex(from);
-        graph.addVertex(to);
-        DefaultWeightedEdge e = graph.addEdge(from, to);
-        if (e == null) { 
-            e = graph.getEdge(from, to);
+        synchronized (writeLock) {
+            putEdge(from, to, weight);
         }
-        graph.setEdgeWeight(e, weight);
+        requestPublish();
     }
 
     @Override
     public Set<String> getFollowing(String user) {
-        if (!graph.containsVertex(user)) return Set.of();
-        return graph.outgoingEdgesOf(user).stream()
-            .map(graph::getEdgeTarget)
-            .collect(Collectors.toSet());
+        int u = ids.indexOf(user);
+        return u < 0 ? Set.of() : view.following(u);
     }
 
     @Override
     public Set<String> getFollowers(String user) {
-        if (!graph.containsVertex(user)) return Set.of();
-        return graph.incomingEdgesOf(user).stream()
-            .map(graph::getEdgeSource)
-            .collect(Collectors.toSet());
+        int u = ids.indexOf(user);
+        return u < 0 ? Set.of() : view.followers(u);
     }
 
     @Override
     public void addUser(String user) {
-        graph.addVertex(user);
+        synchronized (writeLock) {
+            putUser(user);
+        }
+        requestPublish();
     }
 
     @Override
     public List<Map<String, Object>> getGraphData() {
-        return graph.edgeSet().stream().map(edge -> {
+        List<Map<String, Object>> edges = new ArrayList<>();
+        view.forEachEdge((from, to, weight) -> {
             Map<String, Object> map = new HashMap<>();
-            map.put("from", graph.getEdgeSource(edge));
-            map.put("to", graph.getEdgeTarget(edge));
-            map.put("weight", graph.getEdgeWeight(edge));
-            return map;
-        }).collect(Collectors.toList());
+            map.put("from", ids.nameOf(from));
+            map.put("to", ids.nameOf(to));
+            map.put("weight", (double) weight);
+            edges.add(map);
+        });
+        return edges;
     }
 
-
     @Override
     public void clear() {
-        Set<String> vertices = Set.copyOf(graph.vertexSet());
-        vertices.forEach(graph::removeVertex);
+        runOnPublisher("clear", () -> {
+            synchronized (writeLock) {
+                Runnable viewPublished = cutView();
+                Set<String> vertices = Set.copyOf(graph.vertexSet());
+                vertices.forEach(graph::removeVertex);
+                ids.clear();
+                weightScale = 1.0;
+                view.reset(CsrGraph.empty(ids));
+                if (candidateIndex != null) candidateIndex.clear(view.base());
+                if (viewPublished != null) viewPublished.run();
+            }
+        });
     }
 
     @Override
     public double getConnectionWeight(String from, String to) {
-        if (!graph.containsVertex(from) || !graph.containsVertex(to)) return 0.0;
-        DefaultWeightedEdge e = graph.getEdge(from, to);
-        return e == null ? 0.0 : graph.getEdgeWeight(e);
+        int f = ids.indexOf(from);
+        int t = ids.indexOf(to);
+        if (f < 0 || t < 0) return 0.0;
+        float w = view.weight(f, t);
+        return Float.isNaN(w) ? 0.0 : w;
     }
 
     @Override
@@ -79,20 +150,226 @@ public class InMemoryGraphRepository implements GraphRepository {
         addOrUpdateEdge(from, to, newWeight);
     }
 
+    @Override
+    public void applyWeightUpdates(List<WeightUpdate> updates) {
+        // Reads the writer's graph, not the published view, so updates compose on the latest weight
+        synchronized (writeLock) {
+            for (WeightUpdate update : updates) {
+                DefaultWeightedEdge e = graph.containsVertex(update.getFrom()) && graph.containsVertex(update.getTo())
+                    ? graph.getEdge(update.getFrom(), update.getTo())
+                    : null;
+                double current = e == null ? 0.0 : graph.getEdgeWeight(e) * weightScale;
+                putEdge(update.getFrom(), update.getTo(), update.apply(current));
+            }
+        }
+        requestPublish();
+    }
+
+    // The view decays by swapping in a base that shares its arrays with the old one, so this
+    // costs O(1) plus the buffered writes; it waits for any merge that is running
+    @Override
+    public void applyGlobalDecay(double factor) {
+        runOnPublisher("global decay", () -> {
+            synchronized (writeLock) {
+                Runnable viewPublished = cutView();
+                weightScale *= factor;
+                if (weightScale < MIN_WEIGHT_SCALE) {
+                    for (DefaultWeightedEdge e : graph.edgeSet()) {
+                        graph.setEdgeWeight(e, graph.getEdgeWeight(e) * weightScale);
+                    }
+                    weightScale = 1.0;
+                }
+                view.scale((float) factor);
+                if (viewPublished != null) viewPublished.run();
+            }
+        });
+    }
+
     @Override
     public boolean isGraphEmpty() {
-        return graph.vertexSet().isEmpty();
+        return ids.size() == 0;
     }
 
     @Override
     public Map<String, Set<String>> getAllConnections() {
         Map<String, Set<String>> adjacency = new HashMap<>();
-        for (String vertex : graph.vertexSet()) {
-            Set<String> following = graph.outgoingEdgesOf(vertex).stream()
-                .map(graph::getEdgeTarget)
-                .collect(Collectors.toSet());
-            adjacency.put(vertex, following);
+        for (int v = 0; v < ids.size(); v++) {
+            adjacency.put(ids.nameOf(v), new HashSet<>());
         }
+        view.forEachEdge((from, to, weight) ->
+            adjacency.computeIfAbsent(ids.nameOf(from), k -> new HashSet<>()).add(ids.nameOf(to)));
         return adjacency;
     }
+
+    @Override
+    public boolean supportsSnapshots() {
+        return true;
+    }
+
+    @Override
+    public boolean snapshotLags() {
+        return true;
+    }
+
+    @Override
+    public void setViewListener(ViewListener listener) {
+        this.viewListener = listener;
+    }
+
+    // Lags the latest writes by at most the publish interval
+    @Override
+    public Optional<CsrGraph> snapshot() {
+        return Optional.of(view.base());
+    }
+
+    // Views are never modified after publication, so the freshly published one needs no copy
+    @Override
+    public CsrGraph checkpoint() {
+        runOnPublisher("checkpoint", this::merge);
+        return view.base();
+    }
+
+    @Override
+    public CandidateIndex candidateIndex() {
+        return candidateIndex;
+    }
+
+    // Batches are held until close(), which applies them in chunk order, so a failed import
+    // leaves the store as it was
+    @Override
+    public BulkEdgeWriter openBulkWriter() {
+        return new BulkEdgeWriter() {
+            private List<EdgeBatch> batches = new ArrayList<>();
+
+            @Override
+            public synchronized void write(EdgeBatch batch) {
+                if (batches != null) batches.add(batch);
+            }
+
+            // Imports are visible as soon as they finish
+            @Override
+            public synchronized void close() {
+                if (batches == null) return;
+                // Stable, so the batches of one chunk keep their order
+                batches.sort(Comparator.comparingInt(EdgeBatch::chunk));
+                for (EdgeBatch batch : batches) {
+                    synchronized (writeLock) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            putEdge(batch.from(i), batch.to(i), batch.weight(i));
+                        }
+                    }
+                }
+                batches = null;
+                runOnPublisher("bulk load", InMemoryGraphRepository.this::merge);
+            }
+
+            @Override
+            public synchronized void abort() {
+                batches = null;
+            }
+        };
+    }
+
+    @Override
+    public Map<String, Object> getStorageStats() {
+        CsrGraph base = view.base();
+        int pending = view.pendingEdges();
+        long edges = base.edgeCount() + pending;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("storageType", "in-memory");
+        stats.put("vertices", ids.size());
+        stats.put("edges", edges);
+        stats.put("pendingEdges", pending);
+        // An estimate built on the assumed JGraphT cost per edge, reported next to it
+        stats.put("adjacencyBytes", edges * ESTIMATED_BYTES_PER_EDGE + base.estimatedBytes() + pending * 2L * 64);
+        stats.put("assumedJgraphtBytesPerEdge", ESTIMATED_BYTES_PER_EDGE);
+        stats.put("idTableBytes", ids.estimatedBytes());
+        stats.put("publishIntervalMs", publishIntervalMs);
+        if (candidateIndex != null) stats.put("candidateIndex", candidateIndex.getStats());
+        return stats;
+    }
+
+    @Override
+    public void shutdown() {
+        publisher.shutdownNow();
+    }
+
+    // Caller holds writeLock
+    private void putUser(String user) {
+        if (graph.addVertex(user)) {
+            ids.intern(user);
+        }
+    }
+
+    // Caller holds writeLock
+    private void putEdge(String from, String to, double weight) {
+        putUser(from);
+        putUser(to);
+        DefaultWeightedEdge e = graph.addEdge(from, to);
+        if (e == null) {
+            e = graph.getEdge(from, to);
+        } else if (candidateIndex != null) {
+            candidateIndex.onEdgeAdded(from, to);
+        }
+        graph.setEdgeWeight(e, weight / weightScale);
+        view.put(ids.indexOf(from), ids.indexOf(to), (float) weight);
+    }
+
+    private void requestPublish() {
+        if (publishQueued.compareAndSet(false, true)) {
+            publisher.schedule(this::publish, publishIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publish() {
+        publishQueued.set(false);
+        try {
+            merge();
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] Failed to publish in-memory graph view: " + e.getMessage());
+        }
+    }
+
+    // Runs on the publisher thread, so it never overlaps a merge
+    private void runOnPublisher(String operation, Runnable task) {
+        try {
+            publisher.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running " + operation, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(operation + " failed", e.getCause());
+        }
+    }
+
+    // Publisher thread only. Builds the next view from the last one and the writes buffered
+    // since, without holding writeLock; writers keep going into a fresh delta meanwhile.
+    private void merge() {
+        Runnable viewPublished;
+        Supplier<CsrGraph> next;
+        long indexPosition;
+        synchronized (writeLock) {
+            viewPublished = cutView();
+            if (!view.hasPending()) {
+                if (viewPublished != null) viewPublished.run();
+                return;
+            }
+            next = view.freeze();
+            indexPosition = candidateIndex != null ? candidateIndex.position() : 0;
+        }
+
+        CsrGraph merged = next.get();
+
+        synchronized (writeLock) {
+            view.install(merged);
+            if (candidateIndex != null) candidateIndex.onPublished(merged, indexPosition);
+        }
+        if (viewPublished != null) viewPublished.run();
+    }
+
+    // Caller holds writeLock
+    private Runnable cutView() {
+        ViewListener listener = viewListener;
+        return listener == null ? null : listener.cut();
+    }
 }
@@ -1,20 +1,39 @@
 package com.example.instarecommender.repositories;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.async.AsyncSession;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.IdInterner;
 
 public class Neo4jGraphRepository implements GraphRepository {
 
     private final Driver driver;
+    // Null when nothing queries GDS (the hybrid store serves reads from its replica)
+    private final GdsProjectionManager projections;
 
-    public Neo4jGraphRepository(Driver driver) {
+    public Neo4jGraphRepository(Driver driver, GdsProjectionManager projections) {
         this.driver = driver;
+        this.projections = projections;
     }
 
     @Override
@@ -30,6 +49,7 @@ public class Neo4jGraphRepository implements GraphRepository {
                 return null;
             });
         }
+        markDirty(1);
     }
 
     @Override
@@ -43,6 +63,21 @@ public class Neo4jGraphRepository implements GraphRepository {
         }
     }
 
+    // Same query on an AsyncSession; the session is closed on both paths before the future completes
+    @Override
+    public CompletableFuture<Set<String>> getFollowingAsync(String user) {
+        AsyncSession session = driver.session(AsyncSession.class);
+        return session.runAsync("MATCH (:User {id: $userId})-[:FOLLOWS]->(following) RETURN following.id AS id",
+                                Map.of("userId", user))
+            .thenCompose(cursor -> cursor.listAsync(r -> r.get("id").asString()))
+            .handle((ids, error) -> session.closeAsync().thenCompose(closed -> error != null
+                ? CompletableFuture.<List<String>>failedFuture(error)
+                : CompletableFuture.completedFuture(ids)))
+            .thenCompose(closing -> closing)
+            .<Set<String>>thenApply(HashSet::new)
+            .toCompletableFuture();
+    }
+
     @Override
     public Set<String> getFollowers(String user) {
         try (Session session = driver.session()) {
@@ -54,6 +89,63 @@ public class Neo4jGraphRepository implements GraphRepository {
         }
     }
 
+    @Override
+    public Map<String, Set<String>> getFollowingBatch(Collection<String> users) {
+        Map<String, Set<String>> following = emptyEntries(users, HashSet::new);
+        readBatch(users,
+            "UNWIND $userIds AS userId " +
+            "MATCH (:User {id: userId})-[:FOLLOWS]->(following) " +
+            "RETURN userId, following.id AS id",
+            r -> following.get(r.get("userId").asString()).add(r.get("id").asString()));
+        return following;
+    }
+
+    @Override
+    public Map<String, Set<String>> getFollowersBatch(Collection<String> users) {
+        Map<String, Set<String>> followers = emptyEntries(users, HashSet::new);
+        readBatch(users,
+            "UNWIND $userIds AS userId " +
+            "MATCH (follower)-[:FOLLOWS]->(:User {id: userId}) " +
+            "RETURN userId, follower.id AS id",
+            r -> followers.get(r.get("userId").asString()).add(r.get("id").asString()));
+        return followers;
+    }
+
+    @Override
+    public Map<String, Map<String, Double>> getWeightsBatch(Collection<String> users) {
+        Map<String, Map<String, Double>> weights = emptyEntries(users, HashMap::new);
+        readBatch(users,
+            "UNWIND $userIds AS userId " +
+            "MATCH (:User {id: userId})-[r:FOLLOWS]->(following) " +
+            "RETURN userId, following.id AS id, r.weight AS weight",
+            r -> weights.get(r.get("userId").asString()).put(r.get("id").asString(), r.get("weight").asDouble(0.0)));
+        return weights;
+    }
+
+    // Runs an UNWIND $userIds query over every distinct user inside one read transaction, a
+    // chunk of ids per statement, so the whole lookup is a single session and transaction
+    private void readBatch(Collection<String> users, String query, Consumer<Record> row) {
+        List<String> ids = List.copyOf(new LinkedHashSet<>(users));
+        if (ids.isEmpty()) return;
+        try (Session session = driver.session()) {
+            session.executeRead(tx -> {
+                for (int i = 0; i < ids.size(); i += READ_BATCH_SIZE) {
+                    List<String> chunk = ids.subList(i, Math.min(i + READ_BATCH_SIZE, ids.size()));
+                    tx.run(query, Map.of("userIds", chunk)).stream().forEach(row);
+                }
+                return null;
+            });
+        }
+    }
+
+    private static <V> Map<String, V> emptyEntries(Collection<String> users, Supplier<V> empty) {
+        Map<String, V> entries = new LinkedHashMap<>();
+        for (String user : users) {
+            entries.computeIfAbsent(user, k -> empty.get());
+        }
+        return entries;
+    }
+
     @Override
     public void addUser(String user) {
         try (Session session = driver.session()) {
@@ -62,6 +154,7 @@ public class Neo4jGraphRepository implements GraphRepository {
                 return null;
             });
         }
+        markDirty(1);
     }
 
     @Override
@@ -86,6 +179,7 @@ public class Neo4jGraphRepository implements GraphRepository {
                 return null;
             });
         }
+        markDirty(1);
     }
 
     @Override
@@ -101,31 +195,47 @@ public class Neo4jGraphRepository implements GraphRepository {
 
     @Override
     public boolean supportsGds() {
+        return projections != null;
+    }
+
+    @Override
+    public boolean isDurable() {
         return true;
     }
 
+    // Streams every user and edge into a detached CsrGraph in one read transaction, e.g. to
+    // seed an in-memory replica. Users come first so the ids follow Neo4j's node order.
     @Override
-    public void createGdsProjection() {
+    public CsrGraph checkpoint() {
+        IdInterner ids = new IdInterner();
+        int[][] from = {new int[1024]};
+        int[][] to = {new int[1024]};
+        float[][] weight = {new float[1024]};
+        int[] size = {0};
         try (Session session = driver.session()) {
-            System.out.println("[GDS] Dropping old projection (if exists)...");
-            session.run("CALL gds.graph.drop('social-graph', false)");
-
-            System.out.println("[GDS] Creating projection social-graph...");
-            session.run("""
-                CALL gds.graph.project(
-                    'social-graph',
-                    'User',
-                    {
-                        FOLLOWS: {
-                            type: 'FOLLOWS',
-                            orientation: 'NATURAL'
-                        }
+            session.executeRead(tx -> {
+                tx.run("MATCH (u:User) RETURN u.id AS id").stream().forEach(r -> ids.intern(r.get("id").asString()));
+                tx.run("MATCH (a:User)-[r:FOLLOWS]->(b:User) RETURN a.id AS from, b.id AS to, r.weight AS weight").stream().forEach(r -> {
+                    int n = size[0];
+                    if (n == from[0].length) {
+                        from[0] = Arrays.copyOf(from[0], n * 2);
+                        to[0] = Arrays.copyOf(to[0], n * 2);
+                        weight[0] = Arrays.copyOf(weight[0], n * 2);
                     }
-                )
-            """);
-
-            System.out.println("[GDS] Projection ready!");
+                    from[0][n] = ids.intern(r.get("from").asString());
+                    to[0][n] = ids.intern(r.get("to").asString());
+                    weight[0][n] = (float) r.get("weight").asDouble(0.0);
+                    size[0] = n + 1;
+                });
+                return null;
+            });
         }
+        return CsrGraph.build(ids, ids.size(), from[0], to[0], weight[0], size[0]);
+    }
+
+    @Override
+    public void createGdsProjection() {
+        if (projections != null) projections.rebuild();
     }
 
     @Override
@@ -161,15 +271,118 @@ public class Neo4jGraphRepository implements GraphRepository {
                 tx.run(query, Map.of("from", from, "to", to, "weight", newWeight));
                 return null;
             });
-            // refresh projection so GDS sees updated weights
-            try {
-                createGdsProjection();
-            } catch (Exception e) {
-                System.out.println("[WARN] Failed to refresh GDS projection after update: " + e.getMessage());
-            }
+        }
+        // GDS picks the change up on the next projection rebuild
+        markDirty(1);
+    }
+
+    @Override
+    public void applyWeightUpdates(List<WeightUpdate> updates) {
+        if (updates.isEmpty()) return;
+        List<Map<String, Object>> rows = new ArrayList<>(updates.size());
+        for (WeightUpdate update : updates) {
+            rows.add(Map.of(
+                "from", update.getFrom(),
+                "to", update.getTo(),
+                "scale", update.getScale(),
+                "offset", update.getOffset(),
+                "cap", update.getCap()
+            ));
+        }
+        try (Session session = driver.session()) {
+            session.executeWrite(tx -> {
+                // Read and write happen in the same statement, so the whole batch is one round trip
+                String query =
+                    "UNWIND $updates AS u " +
+                    "MERGE (a:User {id: u.from}) " +
+                    "MERGE (b:User {id: u.to}) " +
+                    "MERGE (a)-[r:FOLLOWS]->(b) " +
+                    "ON CREATE SET r.isFollowing = false " +
+                    "WITH r, u, u.scale * coalesce(r.weight, 0.0) + u.offset AS w " +
+                    "SET r.weight = CASE WHEN w < u.cap THEN w ELSE u.cap END";
+
+                tx.run(query, Map.of("updates", rows));
+                return null;
+            });
+        }
+        markDirty(updates.size());
+    }
+
+    @Override
+    public void applyGlobalDecay(double factor) {
+        // One statement for the whole graph, committed in chunks so a large graph does not
+        // need a single huge transaction. IN TRANSACTIONS requires an auto-commit query.
+        // The GDS projection does not carry weights, so it stays valid.
+        try (Session session = driver.session()) {
+            session.run(
+                "MATCH ()-[r:FOLLOWS]->() WHERE r.weight IS NOT NULL " +
+                "CALL { WITH r SET r.weight = r.weight * $factor } IN TRANSACTIONS OF 10000 ROWS",
+                Map.of("factor", factor)
+            ).consume();
         }
     }
 
+    // One UNWIND/MERGE transaction per loader batch, so the batch size is the transaction size.
+    // Batches are written one at a time: concurrent MERGEs on shared users only wait on each
+    // other's locks (or deadlock), while parsing still runs in parallel on the loader threads.
+    @Override
+    public BulkEdgeWriter openBulkWriter() {
+        try (Session session = driver.session()) {
+            // Without it every MERGE on a user is a label scan
+            session.run("CREATE CONSTRAINT user_id IF NOT EXISTS FOR (u:User) REQUIRE u.id IS UNIQUE").consume();
+        }
+        // Each batch commits on its own, so an aborted import keeps the batches written so far.
+        // Every imported relationship carries its chunk until close(); a row from an earlier
+        // chunk then leaves the weight a later one set alone.
+        return new BulkEdgeWriter() {
+            private long written;
+            private boolean done;
+
+            @Override
+            public synchronized void write(EdgeBatch batch) {
+                if (done) return;
+                List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    rows.add(Map.of("from", batch.from(i), "to", batch.to(i), "weight", batch.weight(i)));
+                }
+                try (Session session = driver.session()) {
+                    session.executeWrite(tx -> {
+                        tx.run("UNWIND $rows AS row " +
+                            "MERGE (a:User {id: row.from}) " +
+                            "MERGE (b:User {id: row.to}) " +
+                            "MERGE (a)-[r:FOLLOWS]->(b) " +
+                            "WITH r, row WHERE r.bulkChunk IS NULL OR r.bulkChunk <= $chunk " +
+                            "SET r.weight = row.weight, r.isFollowing = true, r.bulkChunk = $chunk",
+                            Map.of("rows", rows, "chunk", batch.chunk())).consume();
+                        return null;
+                    });
+                }
+                written += rows.size();
+            }
+
+            @Override
+            public synchronized void close() {
+                if (done) return;
+                done = true;
+                try (Session session = driver.session()) {
+                    session.run(
+                        "MATCH ()-[r:FOLLOWS]->() WHERE r.bulkChunk IS NOT NULL " +
+                        "CALL { WITH r REMOVE r.bulkChunk } IN TRANSACTIONS OF 10000 ROWS").consume();
+                }
+                if (written > 0) markDirty((int) Math.min(written, Integer.MAX_VALUE));
+            }
+
+            @Override
+            public synchronized void abort() {
+                if (done) return;
+                if (written > 0) {
+                    System.out.println("[WARN] Bulk import aborted; the " + written + " rows already committed stay in Neo4j");
+                }
+                close();
+            }
+        };
+    }
+
     @Override
     public Map<String, Set<String>> getAllConnections() {
         try (Session session = driver.session()) {
@@ -187,4 +400,8 @@ public class Neo4jGraphRepository implements GraphRepository {
             });
         }
     }
+
+    private void markDirty(int mutations) {
+        if (projections != null) projections.markDirty(mutations);
+    }
 }
@@ -0,0 +1,231 @@
+package com.example.instarecommender.repositories;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Times every data call on the wrapped store as graph.repository{method, backend}. The
+// capability checks and snapshot(), which only reads a reference, are passed through untimed.
+public class TimedGraphRepository implements GraphRepository {
+
+    private static final String[] METHODS = {
+        "addOrUpdateEdge", "getFollowing", "getFollowingAsync", "getFollowers", "addUser", "getGraphData", "clear",
+        "isGraphEmpty", "getConnectionWeight", "updateConnectionWeight", "getAllConnections",
+        "getFollowingBatch", "getFollowersBatch", "getWeightsBatch",
+        "applyWeightUpdates", "applyGlobalDecay", "bulkWrite", "bulkClose", "createGdsProjection",
+        "checkpoint", "restore", "getStorageStats"
+    };
+
+    private final GraphRepository delegate;
+    private final Map<String, Timer> timers = new HashMap<>();
+
+    public TimedGraphRepository(GraphRepository delegate, MeterRegistry registry, String backend) {
+        this.delegate = delegate;
+        for (String method : METHODS) {
+            timers.put(method, Timer.builder("graph.repository")
+                .description("Graph store calls")
+                .tag("method", method)
+                .tag("backend", backend)
+                .publishPercentileHistogram()
+                .register(registry));
+        }
+    }
+
+    public GraphRepository getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void addOrUpdateEdge(String from, String to, double weight) {
+        time("addOrUpdateEdge", () -> delegate.addOrUpdateEdge(from, to, weight));
+    }
+
+    @Override
+    public Set<String> getFollowing(String user) {
+        return time("getFollowing", () -> delegate.getFollowing(user));
+    }
+
+    // Timed until the future completes
+    @Override
+    public CompletableFuture<Set<String>> getFollowingAsync(String user) {
+        long started = System.nanoTime();
+        return delegate.getFollowingAsync(user).whenComplete((following, error) ->
+            timers.get("getFollowingAsync").record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public Set<String> getFollowers(String user) {
+        return time("getFollowers", () -> delegate.getFollowers(user));
+    }
+
+    @Override
+    public void addUser(String user) {
+        time("addUser", () -> delegate.addUser(user));
+    }
+
+    @Override
+    public List<Map<String, Object>> getGraphData() {
+        return time("getGraphData", delegate::getGraphData);
+    }
+
+    @Override
+    public void clear() {
+        time("clear", delegate::clear);
+    }
+
+    @Override
+    public boolean isGraphEmpty() {
+        return time("isGraphEmpty", delegate::isGraphEmpty);
+    }
+
+    @Override
+    public double getConnectionWeight(String from, String to) {
+        return time("getConnectionWeight", () -> delegate.getConnectionWeight(from, to));
+    }
+
+    @Override
+    public void updateConnectionWeight(String from, String to, double weight) {
+        time("updateConnectionWeight", () -> delegate.updateConnectionWeight(from, to, weight));
+    }
+
+    @Override
+    public Map<String, Set<String>> getAllConnections() {
+        return time("getAllConnections", delegate::getAllConnections);
+    }
+
+    @Override
+    public Map<String, Set<String>> getFollowingBatch(Collection<String> users) {
+        return time("getFollowingBatch", () -> delegate.getFollowingBatch(users));
+    }
+
+    @Override
+    public Map<String, Set<String>> getFollowersBatch(Collection<String> users) {
+        return time("getFollowersBatch", () -> delegate.getFollowersBatch(users));
+    }
+
+    @Override
+    public Map<String, Map<String, Double>> getWeightsBatch(Collection<String> users) {
+        return time("getWeightsBatch", () -> delegate.getWeightsBatch(users));
+    }
+
+    @Override
+    public void applyWeightUpdates(List<WeightUpdate> updates) {
+        time("applyWeightUpdates", () -> delegate.applyWeightUpdates(updates));
+    }
+
+    @Override
+    public void applyGlobalDecay(double factor) {
+        time("applyGlobalDecay", () -> delegate.applyGlobalDecay(factor));
+    }
+
+    @Override
+    public BulkEdgeWriter openBulkWriter() {
+        BulkEdgeWriter writer = delegate.openBulkWriter();
+        return new BulkEdgeWriter() {
+            @Override
+            public void write(EdgeBatch batch) {
+                time("bulkWrite", () -> writer.write(batch));
+            }
+
+            @Override
+            public void close() {
+                time("bulkClose", writer::close);
+            }
+
+            @Override
+            public void abort() {
+                writer.abort();
+            }
+        };
+    }
+
+    @Override
+    public boolean supportsGds() {
+        return delegate.supportsGds();
+    }
+
+    @Override
+    public void createGdsProjection() {
+        time("createGdsProjection", delegate::createGdsProjection);
+    }
+
+    @Override
+    public boolean supportsSnapshots() {
+        return delegate.supportsSnapshots();
+    }
+
+    @Override
+    public boolean isDurable() {
+        return delegate.isDurable();
+    }
+
+    @Override
+    public boolean snapshotLags() {
+        return delegate.snapshotLags();
+    }
+
+    @Override
+    public void setViewListener(ViewListener listener) {
+        delegate.setViewListener(listener);
+    }
+
+    @Override
+    public Optional<CsrGraph> snapshot() {
+        return delegate.snapshot();
+    }
+
+    @Override
+    public CsrGraph checkpoint() {
+        return time("checkpoint", delegate::checkpoint);
+    }
+
+    @Override
+    public void restore(CsrGraph graph) {
+        time("restore", () -> delegate.restore(graph));
+    }
+
+    @Override
+    public CandidateIndex candidateIndex() {
+        return delegate.candidateIndex();
+    }
+
+    @Override
+    public Map<String, Object> getStorageStats() {
+        return time("getStorageStats", delegate::getStorageStats);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    private void time(String method, Runnable call) {
+        long started = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            timers.get(method).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private <T> T time(String method, Supplier<T> call) {
+        long started = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timers.get(method).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.instarecommender.repositories;
+
+// Told about the views a store whose snapshot() trails its writes publishes. cut() runs under
+// the store's write lock when a view starts being built, so that view holds every write
+// applied before the call; the action it returns (null for none) runs once snapshot() returns
+// that view or a newer one.
+@FunctionalInterface
+public interface ViewListener {
+    Runnable cut();
+}
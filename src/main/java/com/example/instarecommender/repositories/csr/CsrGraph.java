@@ -0,0 +1,242 @@
+package com.example.instarecommender.repositories.csr;
+
+import java.util.Arrays;
+import java.util.Map;
+
+// Immutable compressed-sparse-row adjacency over interned user ids.
+// Rows are sorted by neighbor id so membership checks and merges can use binary search.
+// Nothing changes after construction: updates build a new graph (merge) and decay returns one
+// that shares the arrays under another scale (scaled), so a reader never sees a half-applied write.
+public final class CsrGraph {
+    private final IdInterner ids;
+    private final int vertexCount;
+
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final float[] outWeights;
+
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final float[] inWeights;
+    // Applied on read, so a global decay shares every array with the graph it decays
+    private final float weightScale;
+
+    private CsrGraph(IdInterner ids, int vertexCount,
+                     int[] outOffsets, int[] outTargets, float[] outWeights,
+                     int[] inOffsets, int[] inSources, float[] inWeights, float weightScale) {
+        this.ids = ids;
+        this.vertexCount = vertexCount;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outWeights = outWeights;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.inWeights = inWeights;
+        this.weightScale = weightScale;
+    }
+
+    public static CsrGraph empty(IdInterner ids) {
+        return build(ids, 0, new int[0], new int[0], new float[0], 0);
+    }
+
+    // Builds a graph from parallel edge arrays. When the same (from, to) pair appears
+    // more than once the last occurrence wins, matching addOrUpdateEdge semantics.
+    public static CsrGraph build(IdInterner ids, int vertexCount,
+                                 int[] from, int[] to, float[] weight, int edgeCount) {
+        int[] outOffsets = new int[vertexCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            outOffsets[from[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            outOffsets[v + 1] += outOffsets[v];
+        }
+
+        // Bucket edges by source; within a row sort by (target, insertion order)
+        long[] keys = new long[edgeCount];
+        int[] cursor = Arrays.copyOf(outOffsets, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            keys[cursor[from[e]]++] = ((long) to[e] << 32) | e;
+        }
+
+        int[] outTargets = new int[edgeCount];
+        float[] outWeights = new float[edgeCount];
+        int[] compactOffsets = new int[vertexCount + 1];
+        int written = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            int start = outOffsets[v];
+            int end = outOffsets[v + 1];
+            Arrays.sort(keys, start, end);
+            for (int i = start; i < end; i++) {
+                int target = (int) (keys[i] >>> 32);
+                int edge = (int) keys[i];
+                if (i + 1 < end && (int) (keys[i + 1] >>> 32) == target) continue; // later duplicate wins
+                outTargets[written] = target;
+                outWeights[written] = weight[edge];
+                written++;
+            }
+            compactOffsets[v + 1] = written;
+        }
+        if (written < edgeCount) {
+            outTargets = Arrays.copyOf(outTargets, written);
+            outWeights = Arrays.copyOf(outWeights, written);
+        }
+        return fromOutRows(ids, vertexCount, compactOffsets, outTargets, outWeights);
+    }
+
+    // Builds the graph from already sorted, duplicate-free out rows; derives the in rows.
+    public static CsrGraph fromOutRows(IdInterner ids, int vertexCount,
+                                       int[] outOffsets, int[] outTargets, float[] outWeights) {
+        int edgeCount = outOffsets[vertexCount];
+        int[] inOffsets = new int[vertexCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            inOffsets[outTargets[e] + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+
+        // Sources are visited in ascending order, so every in row comes out sorted
+        int[] inSources = new int[edgeCount];
+        float[] inWeights = new float[edgeCount];
+        int[] cursor = Arrays.copyOf(inOffsets, vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            for (int e = outOffsets[v]; e < outOffsets[v + 1]; e++) {
+                int slot = cursor[outTargets[e]]++;
+                inSources[slot] = v;
+                inWeights[slot] = outWeights[e];
+            }
+        }
+        return new CsrGraph(ids, vertexCount, outOffsets, outTargets, outWeights, inOffsets, inSources, inWeights, 1f);
+    }
+
+    // This graph with the delta's edges added and its weights overriding, over the first
+    // vertexCount interned users. The delta must not change while this runs.
+    public CsrGraph merge(EdgeDelta delta, int vertexCount) {
+        int[] offsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            int degree = v < this.vertexCount ? outDegree(v) : 0;
+            for (int t : delta.outgoing(v).keySet()) {
+                if (!hasEdge(v, t)) degree++;
+            }
+            offsets[v + 1] = offsets[v] + degree;
+        }
+
+        int[] targets = new int[offsets[vertexCount]];
+        float[] weights = new float[offsets[vertexCount]];
+        for (int v = 0; v < vertexCount; v++) {
+            int start = v < this.vertexCount ? outStart(v) : 0;
+            int end = v < this.vertexCount ? outEnd(v) : 0;
+            Map<Integer, Float> row = delta.outgoing(v);
+            int w = offsets[v];
+            if (row.isEmpty()) {
+                for (int i = start; i < end; i++, w++) {
+                    targets[w] = outTargets[i];
+                    weights[w] = outWeight(i);
+                }
+                continue;
+            }
+
+            int[] added = row.keySet().stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(added);
+            int i = start;
+            int j = 0;
+            while (i < end || j < added.length) {
+                if (j == added.length || (i < end && outTargets[i] < added[j])) {
+                    targets[w] = outTargets[i];
+                    weights[w++] = outWeight(i++);
+                } else {
+                    if (i < end && outTargets[i] == added[j]) i++; // buffered weight overrides
+                    targets[w] = added[j];
+                    weights[w++] = row.get(added[j++]);
+                }
+            }
+        }
+        return fromOutRows(ids, vertexCount, offsets, targets, weights);
+    }
+
+    // Same structure with every weight multiplied by factor; this graph does not change
+    public CsrGraph scaled(float factor) {
+        return new CsrGraph(ids, vertexCount, outOffsets, outTargets, outWeights,
+            inOffsets, inSources, inWeights, weightScale * factor);
+    }
+
+    // Same arrays resolved through another interner that assigns the same ids to the same users
+    public CsrGraph rebind(IdInterner other) {
+        return new CsrGraph(other, vertexCount, outOffsets, outTargets, outWeights,
+            inOffsets, inSources, inWeights, weightScale);
+    }
+
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    public int edgeCount() {
+        return outOffsets[vertexCount];
+    }
+
+    // Returns -1 for unknown users and for users interned after this snapshot was built
+    public int indexOf(String user) {
+        int id = ids.indexOf(user);
+        return id < vertexCount ? id : -1;
+    }
+
+    public String userAt(int id) {
+        return ids.nameOf(id);
+    }
+
+    public int outStart(int v) {
+        return outOffsets[v];
+    }
+
+    public int outEnd(int v) {
+        return outOffsets[v + 1];
+    }
+
+    public int outDegree(int v) {
+        return outOffsets[v + 1] - outOffsets[v];
+    }
+
+    public int inStart(int v) {
+        return inOffsets[v];
+    }
+
+    public int inEnd(int v) {
+        return inOffsets[v + 1];
+    }
+
+    public int inDegree(int v) {
+        return inOffsets[v + 1] - inOffsets[v];
+    }
+
+    public int outTarget(int slot) {
+        return outTargets[slot];
+    }
+
+    public float outWeight(int slot) {
+        return outWeights[slot] * weightScale;
+    }
+
+    public int inSource(int slot) {
+        return inSources[slot];
+    }
+
+    public float inWeight(int slot) {
+        return inWeights[slot] * weightScale;
+    }
+
+    // Slot of the (from, to) edge in the out arrays, or -1
+    public int findEdge(int from, int to) {
+        if (from < 0 || from >= vertexCount || to < 0) return -1;
+        int slot = Arrays.binarySearch(outTargets, outOffsets[from], outOffsets[from + 1], to);
+        return slot >= 0 ? slot : -1;
+    }
+
+    public boolean hasEdge(int from, int to) {
+        return findEdge(from, to) >= 0;
+    }
+
+    public long estimatedBytes() {
+        return 4L * (outOffsets.length + inOffsets.length)
+            + 8L * (outTargets.length + inSources.length);
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.instarecommender.repositories.csr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Binary image of a CsrGraph: the id table and the out rows, followed by a CRC32 of every
+// byte before it. Loading maps the file, checks the CRC, and bulk-copies the arrays; the in
+// rows are derived again instead of being stored. All numbers are big-endian.
+//
+//   int magic, int version, int vertexCount, int edgeCount, long createdAtMillis,
+//   long logPosition (version 2+; where mutation log replay resumes, 0 if none)
+//   vertexCount x (int length, UTF-8 bytes)   user ids in id order
+//   int[vertexCount + 1] outOffsets, int[edgeCount] outTargets, float[edgeCount] outWeights
+//   long crc32
+public final class CsrGraphFile {
+
+    public static final int MAGIC = 0x49524353; // "IRCS"
+    public static final int VERSION = 2;
+
+    private static final int HEADER_BYTES = 24;
+    private static final int BUFFER_BYTES = 1 << 20;
+    // Files are mapped in windows so images larger than 2 GB can still be read
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    public static final class Image {
+        public final CsrGraph graph;
+        public final long logPosition;
+
+        Image(CsrGraph graph, long logPosition) {
+            this.graph = graph;
+            this.logPosition = logPosition;
+        }
+    }
+
+    private CsrGraphFile() {
+    }
+
+    // Writes to a temporary file next to path and moves it into place, so a crash mid-write
+    // leaves the previous image intact
+    public static long write(CsrGraph graph, long logPosition, Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        long bytes;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            int vertexCount = graph.vertexCount();
+            int edgeCount = graph.edgeCount();
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(vertexCount).putInt(edgeCount)
+                .putLong(System.currentTimeMillis()).putLong(logPosition);
+            for (int v = 0; v < vertexCount; v++) {
+                byte[] name = graph.userAt(v).getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < 4 + name.length) flush(channel, buffer, crc);
+                if (buffer.remaining() < 4 + name.length) {
+                    // A user id longer than the buffer: write it straight through
+                    buffer.putInt(name.length);
+                    flush(channel, buffer, crc);
+                    crc.update(name);
+                    writeFully(channel, ByteBuffer.wrap(name));
+                    continue;
+                }
+                buffer.putInt(name.length).put(name);
+            }
+            for (int v = 0; v <= vertexCount; v++) {
+                if (buffer.remaining() < 4) flush(channel, buffer, crc);
+                buffer.putInt(v == vertexCount ? edgeCount : graph.outStart(v));
+            }
+            for (int e = 0; e < edgeCount; e++) {
+                if (buffer.remaining() < 4) flush(channel, buffer, crc);
+                buffer.putInt(graph.outTarget(e));
+            }
+            for (int e = 0; e < edgeCount; e++) {
+                if (buffer.remaining() < 4) flush(channel, buffer, crc);
+                buffer.putFloat(graph.outWeight(e));
+            }
+            flush(channel, buffer, crc);
+            buffer.putLong(crc.getValue());
+            buffer.flip();
+            writeFully(channel, buffer);
+            channel.force(true);
+            bytes = channel.size();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return bytes;
+    }
+
+    // The returned graph has its own IdInterner holding the users in id order
+    public static Image read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 8) throw new IOException("Snapshot " + path + " is truncated");
+            verifyChecksum(channel, size, path);
+
+            Reader in = new Reader(channel, size - 8);
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != MAGIC) throw new IOException(path + " is not a graph snapshot");
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported snapshot version " + version + " in " + path);
+            int vertexCount = in.readInt();
+            int edgeCount = in.readInt();
+            in.readLong(); // createdAtMillis
+            long logPosition = version >= 2 ? in.readLong() : 0;
+
+            IdInterner ids = new IdInterner();
+            for (int v = 0; v < vertexCount; v++) {
+                byte[] name = new byte[in.readInt()];
+                in.readBytes(name);
+                ids.intern(new String(name, StandardCharsets.UTF_8));
+            }
+            if (ids.size() != vertexCount) throw new IOException("Snapshot " + path + " repeats a user id");
+
+            int[] offsets = new int[vertexCount + 1];
+            int[] targets = new int[edgeCount];
+            float[] weights = new float[edgeCount];
+            in.readInts(offsets);
+            in.readInts(targets);
+            in.readFloats(weights);
+            if (offsets[vertexCount] != edgeCount) throw new IOException("Snapshot " + path + " has inconsistent offsets");
+            return new Image(CsrGraph.fromOutRows(ids, vertexCount, offsets, targets, weights), logPosition);
+        }
+    }
+
+    private static void verifyChecksum(FileChannel channel, long size, Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        long body = size - 8;
+        for (long position = 0; position < body; position += WINDOW_BYTES) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, body - position)));
+        }
+        ByteBuffer stored = ByteBuffer.allocate(8);
+        channel.read(stored, body);
+        if (stored.flip().getLong() != crc.getValue()) {
+            throw new IOException("Checksum mismatch in snapshot " + path);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Sequential reads over a file mapped one window at a time
+    private static final class Reader {
+        private final FileChannel channel;
+        private final long end;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        Reader(FileChannel channel, long end) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            map(0);
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            return window.getInt();
+        }
+
+        long readLong() throws IOException {
+            require(8);
+            return window.getLong();
+        }
+
+        void readBytes(byte[] target) throws IOException {
+            int done = 0;
+            while (done < target.length) {
+                require(1);
+                int n = Math.min(window.remaining(), target.length - done);
+                window.get(target, done, n);
+                done += n;
+            }
+        }
+
+        void readInts(int[] target) throws IOException {
+            int done = 0;
+            while (done < target.length) {
+                require(4);
+                int n = Math.min(window.remaining() / 4, target.length - done);
+                IntBuffer ints = window.asIntBuffer();
+                ints.get(target, done, n);
+                window.position(window.position() + n * 4);
+                done += n;
+            }
+        }
+
+        void readFloats(float[] target) throws IOException {
+            int done = 0;
+            while (done < target.length) {
+                require(4);
+                int n = Math.min(window.remaining() / 4, target.length - done);
+                window.asFloatBuffer().get(target, done, n);
+                window.position(window.position() + n * 4);
+                done += n;
+            }
+        }
+
+        // Remaps so that at least `bytes` are available at the current position
+        private void require(int bytes) throws IOException {
+            if (window.remaining() >= bytes) return;
+            long position = windowStart + window.position();
+            if (end - position < bytes) throw new IOException("Snapshot is truncated");
+            map(position);
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_BYTES, end - position));
+        }
+    }
+}
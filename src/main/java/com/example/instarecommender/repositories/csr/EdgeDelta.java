@@ -0,0 +1,61 @@
+package com.example.instarecommender.repositories.csr;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Small mutable buffer of edge upserts that have not been compacted into a CsrGraph yet.
+// Indexed both ways so follower lookups do not need to scan the whole buffer.
+public class EdgeDelta {
+    private final Map<Integer, Map<Integer, Float>> out = new ConcurrentHashMap<>();
+    private final Map<Integer, Map<Integer, Float>> in = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public void put(int from, int to, float weight) {
+        Float previous = out.computeIfAbsent(from, k -> new ConcurrentHashMap<>()).put(to, weight);
+        in.computeIfAbsent(to, k -> new ConcurrentHashMap<>()).put(from, weight);
+        if (previous == null) size.incrementAndGet();
+    }
+
+    // NaN when the edge is not buffered
+    public float weight(int from, int to) {
+        Map<Integer, Float> row = out.get(from);
+        if (row == null) return Float.NaN;
+        Float w = row.get(to);
+        return w == null ? Float.NaN : w;
+    }
+
+    public void remove(int from, int to) {
+        Map<Integer, Float> row = out.get(from);
+        if (row != null && row.remove(to) != null) {
+            size.decrementAndGet();
+            Map<Integer, Float> column = in.get(to);
+            if (column != null) column.remove(from);
+        }
+    }
+
+    public void scale(float factor) {
+        out.values().forEach(row -> row.replaceAll((to, w) -> w * factor));
+        in.values().forEach(column -> column.replaceAll((from, w) -> w * factor));
+    }
+
+    public Map<Integer, Float> outgoing(int from) {
+        return out.getOrDefault(from, Map.of());
+    }
+
+    public Map<Integer, Float> incoming(int to) {
+        return in.getOrDefault(to, Map.of());
+    }
+
+    public Map<Integer, Map<Integer, Float>> rows() {
+        return out;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.instarecommender.repositories.csr;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps user ids to dense ints (0..size-1). Ids are append-only so an int handed out
+// once stays valid for the lifetime of the interner (until clear()).
+public class IdInterner {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[1024];
+    private volatile int size;
+
+    public int indexOf(String user) {
+        Integer id = ids.get(user);
+        return id == null ? -1 : id;
+    }
+
+    public synchronized int intern(String user) {
+        Integer existing = ids.get(user);
+        if (existing != null) return existing;
+
+        int id = size;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = user;
+        names = current;
+        ids.put(user, id);
+        size = id + 1;
+        return id;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        ids.clear();
+        names = new String[1024];
+        size = 0;
+    }
+
+    // Rough footprint of the id table: the names array plus one map entry per user.
+    // The user strings themselves are shared with the callers and not counted.
+    public long estimatedBytes() {
+        return (long) names.length * 4 + (long) size * 48;
+    }
+}
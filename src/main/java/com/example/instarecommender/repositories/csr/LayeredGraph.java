@@ -0,0 +1,199 @@
+package com.example.instarecommender.repositories.csr;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// A compacted CsrGraph plus the edge upserts written since it was built. New writes land in
+// the active delta; freeze() moves it aside and hands back the merge of base + delta, which
+// the owner runs off its lock and installs once done. Reads go through all the layers
+// without locking. The owner serializes put, scale, freeze, install and reset under its write
+// lock, and never runs scale, rebuild or reset while a merge is in flight.
+public final class LayeredGraph {
+
+    @FunctionalInterface
+    public interface EdgeVisitor {
+        void visit(int from, int to, float weight);
+    }
+
+    // The compacted base and the delta currently being merged into a new one (null when no
+    // merge is running), swapped together so a reader never sees one without the other
+    private static final class Layers {
+        final CsrGraph base;
+        final EdgeDelta frozen;
+
+        Layers(CsrGraph base, EdgeDelta frozen) {
+            this.base = base;
+            this.frozen = frozen;
+        }
+    }
+
+    private final IdInterner ids;
+    // Writers replace layers before active and readers load active first, so a reader that
+    // sees a fresh delta also sees the layers holding the edges of the one it replaced
+    private volatile Layers layers;
+    private volatile EdgeDelta active = new EdgeDelta();
+
+    public LayeredGraph(IdInterner ids) {
+        this.ids = ids;
+        this.layers = new Layers(CsrGraph.empty(ids), null);
+    }
+
+    public CsrGraph base() {
+        return layers.base;
+    }
+
+    // NaN when there is no such edge
+    public float weight(int from, int to) {
+        float w = active.weight(from, to);
+        if (!Float.isNaN(w)) return w;
+        Layers l = layers;
+        if (l.frozen != null) {
+            w = l.frozen.weight(from, to);
+            if (!Float.isNaN(w)) return w;
+        }
+        int slot = l.base.findEdge(from, to);
+        return slot < 0 ? Float.NaN : l.base.outWeight(slot);
+    }
+
+    public Set<String> following(int u) {
+        Set<String> following = new HashSet<>();
+        EdgeDelta act = active;
+        Layers l = layers;
+        CsrGraph g = l.base;
+        if (u < g.vertexCount()) {
+            for (int i = g.outStart(u); i < g.outEnd(u); i++) {
+                following.add(ids.nameOf(g.outTarget(i)));
+            }
+        }
+        if (l.frozen != null) l.frozen.outgoing(u).keySet().forEach(t -> following.add(ids.nameOf(t)));
+        act.outgoing(u).keySet().forEach(t -> following.add(ids.nameOf(t)));
+        return following;
+    }
+
+    public Set<String> followers(int u) {
+        Set<String> followers = new HashSet<>();
+        EdgeDelta act = active;
+        Layers l = layers;
+        CsrGraph g = l.base;
+        if (u < g.vertexCount()) {
+            for (int i = g.inStart(u); i < g.inEnd(u); i++) {
+                followers.add(ids.nameOf(g.inSource(i)));
+            }
+        }
+        if (l.frozen != null) l.frozen.incoming(u).keySet().forEach(s -> followers.add(ids.nameOf(s)));
+        act.incoming(u).keySet().forEach(s -> followers.add(ids.nameOf(s)));
+        return followers;
+    }
+
+    // Every edge once, with its newest weight
+    public void forEachEdge(EdgeVisitor visitor) {
+        EdgeDelta act = active;
+        Layers l = layers;
+        CsrGraph g = l.base;
+        EdgeDelta fz = l.frozen;
+        for (int v = 0; v < g.vertexCount(); v++) {
+            for (int i = g.outStart(v); i < g.outEnd(v); i++) {
+                int t = g.outTarget(i);
+                float w = act.weight(v, t);
+                if (Float.isNaN(w) && fz != null) w = fz.weight(v, t);
+                visitor.visit(v, t, Float.isNaN(w) ? g.outWeight(i) : w);
+            }
+        }
+        if (fz != null) {
+            fz.rows().forEach((from, row) -> row.forEach((to, w) -> {
+                if (g.hasEdge(from, to)) return;
+                float override = act.weight(from, to);
+                visitor.visit(from, to, Float.isNaN(override) ? w : override);
+            }));
+        }
+        act.rows().forEach((from, row) -> row.forEach((to, w) -> {
+            if (g.hasEdge(from, to)) return;
+            if (fz != null && !Float.isNaN(fz.weight(from, to))) return;
+            visitor.visit(from, to, w);
+        }));
+    }
+
+    // Upserts buffered on top of the base, counted once per layer they sit in
+    public int pendingEdges() {
+        EdgeDelta act = active;
+        EdgeDelta fz = layers.frozen;
+        return act.size() + (fz == null ? 0 : fz.size());
+    }
+
+    // Whether the base misses any write: buffered edges, or users interned since it was built
+    public boolean hasPending() {
+        Layers l = layers;
+        return !active.isEmpty() || l.frozen != null || ids.size() > l.base.vertexCount();
+    }
+
+    // Caller holds the write lock; returns the size of the active delta
+    public int put(int from, int to, float weight) {
+        EdgeDelta act = active;
+        act.put(from, to, weight);
+        return act.size();
+    }
+
+    // Caller holds the write lock; the new base shares its arrays with the old one
+    public void scale(float factor) {
+        Layers l = layers;
+        if (l.frozen != null) throw new IllegalStateException("cannot scale while a merge is running");
+        layers = new Layers(l.base.scaled(factor), null);
+        active.scale(factor);
+    }
+
+    // Caller holds the write lock. New writes go to a fresh delta from here on; the returned
+    // merge reads only the frozen layers, so it can run without the lock.
+    public Supplier<CsrGraph> freeze() {
+        Layers l = layers;
+        if (l.frozen != null) throw new IllegalStateException("a merge is already running");
+        EdgeDelta captured = active;
+        int vertexCount = ids.size();
+        layers = new Layers(l.base, captured);
+        active = new EdgeDelta();
+        return () -> l.base.merge(captured, vertexCount);
+    }
+
+    // Caller holds the write lock; `merged` is the result of the last freeze()
+    public void install(CsrGraph merged) {
+        layers = new Layers(merged, null);
+    }
+
+    // Caller holds the write lock. New base from the current one, then the given rows, then
+    // the active delta; later rows win.
+    public CsrGraph rebuild(int[] from, int[] to, float[] weight, int count) {
+        CsrGraph current = layers.base;
+        EdgeDelta pending = active;
+        int total = current.edgeCount() + count + pending.size();
+        int[] f = new int[total];
+        int[] t = new int[total];
+        float[] w = new float[total];
+        int e = 0;
+        for (int v = 0; v < current.vertexCount(); v++) {
+            for (int i = current.outStart(v); i < current.outEnd(v); i++, e++) {
+                f[e] = v;
+                t[e] = current.outTarget(i);
+                w[e] = current.outWeight(i);
+            }
+        }
+        System.arraycopy(from, 0, f, e, count);
+        System.arraycopy(to, 0, t, e, count);
+        System.arraycopy(weight, 0, w, e, count);
+        e += count;
+        for (Map.Entry<Integer, Map<Integer, Float>> row : pending.rows().entrySet()) {
+            for (Map.Entry<Integer, Float> edge : row.getValue().entrySet()) {
+                f[e] = row.getKey();
+                t[e] = edge.getKey();
+                w[e++] = edge.getValue();
+            }
+        }
+        return CsrGraph.build(ids, ids.size(), f, t, w, e);
+    }
+
+    // Caller holds the write lock; drops every buffered write
+    public void reset(CsrGraph base) {
+        layers = new Layers(base, null);
+        active = new EdgeDelta();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.instarecommender.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.models.AlgorithmTypes;
+import com.example.instarecommender.models.BatchRecommendationResult;
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.recommenders.SnapshotRecommender;
+import com.example.instarecommender.recommenders.factory.RecommenderFactory;
+import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+import jakarta.annotation.PreDestroy;
+
+// Offline "people you may know" for many users at once. Users are split into chunks that
+// run on a dedicated ForkJoinPool; each chunk is one recommendBatch call. In-memory
+// strategies score every chunk of a batch against the one snapshot taken when it starts, with
+// the worker's scratch buffers, and Neo4j strategies answer each chunk with one UNWIND query.
+// Results bypass the per-user cache.
+@Service
+public class BatchRecommendationService {
+
+    private final RecommenderFactory recommenderFactory;
+    private final GraphService graphService;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public BatchRecommendationService(
+        RecommenderFactory recommenderFactory,
+        GraphService graphService,
+        @Value("${app.batch.parallelism:0}") int parallelism,
+        @Value("${app.batch.chunk-size:256}") int chunkSize
+    ) {
+        this.recommenderFactory = recommenderFactory;
+        this.graphService = graphService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    public List<String> allUsers() {
+        return graphService.getAllUsers();
+    }
+
+    // Calls `sink` once per finished chunk, from the worker threads; chunks finish in any order
+    public void recommend(List<String> users, AlgorithmTypes algorithm, int limit,
+                          Consumer<List<BatchRecommendationResult>> sink) {
+        RecommenderStrategy strategy = recommenderFactory.getRecommender(algorithm);
+        Function<List<String>, List<RecommendationResponse>> scorer;
+        if (strategy instanceof SnapshotRecommender snapshotStrategy) {
+            CsrGraph graph = graphService.snapshot();
+            scorer = chunk -> snapshotStrategy.recommendBatch(graph, chunk, limit);
+        } else {
+            scorer = chunk -> strategy.recommendBatch(chunk, limit);
+        }
+        pool.invoke(new ChunkTask(users, 0, users.size(), scorer, sink));
+    }
+
+    // Same as recommend, without holding the caller's thread while the batch runs
+    public CompletableFuture<Void> recommendAsync(List<String> users, AlgorithmTypes algorithm, int limit,
+                                                  Consumer<List<BatchRecommendationResult>> sink) {
+        return CompletableFuture.runAsync(() -> recommend(users, algorithm, limit, sink), pool);
+    }
+
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> users;
+        private final int from;
+        private final int to;
+        private final Function<List<String>, List<RecommendationResponse>> scorer;
+        private final Consumer<List<BatchRecommendationResult>> sink;
+
+        ChunkTask(List<String> users, int from, int to, Function<List<String>, List<RecommendationResponse>> scorer,
+                  Consumer<List<BatchRecommendationResult>> sink) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+            this.scorer = scorer;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(users, from, middle, scorer, sink),
+                          new ChunkTask(users, middle, to, scorer, sink));
+                return;
+            }
+
+            List<String> chunk = users.subList(from, to);
+            List<BatchRecommendationResult> results = new ArrayList<>(chunk.size());
+            try {
+                List<RecommendationResponse> responses = scorer.apply(chunk);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(new BatchRecommendationResult(chunk.get(i), responses.get(i).getRecommendations(), null));
+                }
+            } catch (RuntimeException e) {
+                // A failed chunk is reported per user; the rest of the batch keeps going
+                results.clear();
+                for (String user : chunk) {
+                    results.add(new BatchRecommendationResult(user, null, e.getMessage()));
+                }
+            }
+            sink.accept(results);
+        }
+    }
+}
@@ -1,44 +1,64 @@
 package com.example.instarecommender.services;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.example.instarecommender.models.InteractionType;
+import com.example.instarecommender.models.WeightUpdate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class DynamicWeightService {
+    // Applied to the current weight on every interaction to prevent weights from growing indefinitely
+    public static final double INTERACTION_DECAY = 0.95;
+    public static final double MAX_WEIGHT = 10.0;
+    public static final double GLOBAL_DECAY = 0.99;
+
     private final GraphService graphService;
-    public DynamicWeightService(GraphService graphService) {
+    private final Timer decayTimer;
+
+    public DynamicWeightService(GraphService graphService, MeterRegistry meterRegistry) {
         this.graphService = graphService;
+        this.decayTimer = Timer.builder("graph.decay")
+            .description("Global decay sweeps")
+            .register(meterRegistry);
     }
 
-    public void updateWeightBasedOnInteraction(String from, String to, 
-                                                InteractionType type) {
-        double currentWeight = graphService.getConnectionWeight(from, to);
-        double increment = switch (type) {
+    public static double incrementFor(InteractionType type) {
+        return switch (type) {
             case COMMENT -> 0.5;
             case LIKE -> 0.1;
             case SHARE -> 1.0;
             case DIRECT_MESSAGE -> 2.0;
             case VIDEO_CALL -> 5.0;
         };
-        
-        // Apply decay factor to prevent weights from growing indefinitely
-        double decayedWeight = currentWeight * 0.95;
-        double newWeight = Math.min(decayedWeight + increment, 10.0);
-        
-        graphService.updateConnectionWeight(from, to, newWeight);
+    }
+
+    // Folds one more interaction into a pending update for the same pair
+    public static WeightUpdate withInteraction(WeightUpdate update, InteractionType type) {
+        return update.andThen(INTERACTION_DECAY, incrementFor(type), MAX_WEIGHT);
+    }
+
+    public void updateWeightBasedOnInteraction(String from, String to, 
+                                                InteractionType type) {
+        // Decay, increment and clamp as one relative update, so the store reads the current
+        // weight itself instead of this method acting on a possibly stale read
+        graphService.applyWeightUpdates(List.of(withInteraction(WeightUpdate.identity(from, to), type)));
     }
 
     @Scheduled(cron = "0 */10 * * * *") // Run daily (ten minutes for testing)
     public void applyGlobalDecay() {
-        // Reduce all weights slightly to reflect fading relationships
-        graphService.getAllConnections().forEach((from, toSet) -> {
-            toSet.forEach(to -> {
-                double currentWeight = graphService.getConnectionWeight(from, to);
-                double newWeight = currentWeight * 0.99; // 1% daily decay
-                graphService.updateConnectionWeight(from, to, newWeight);
-            });
-        });
+        // Reduce all weights slightly to reflect fading relationships (1% daily decay).
+        // A single bulk operation per backend rather than a read and a write per edge.
+        long started = System.currentTimeMillis();
+        graphService.applyGlobalDecay(GLOBAL_DECAY);
+        long elapsed = System.currentTimeMillis() - started;
+        decayTimer.record(elapsed, TimeUnit.MILLISECONDS);
+        System.out.println("[INFO] Global decay applied in " + elapsed + " ms");
     }
 }
@@ -0,0 +1,135 @@
+package com.example.instarecommender.services;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.recommenders.gnn.EmbeddingTable;
+import com.example.instarecommender.recommenders.gnn.IvfIndex;
+import com.example.instarecommender.recommenders.gnn.SparsePropagation;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Computes the GNN embeddings on a schedule instead of per request.
+// Features come from a seeded generator indexed by user id, so a user keeps the same
+// input features across refreshes and results are stable between calls.
+@Service
+@Profile("in-memory")
+public class GnnEmbeddingService {
+
+    public static final int EMBEDDING_SIZE = 64;
+    public static final int LAYERS = 2;
+
+    public static final class Model {
+        private final EmbeddingTable table;
+        private final IvfIndex index;
+
+        Model(EmbeddingTable table, IvfIndex index) {
+            this.table = table;
+            this.index = index;
+        }
+
+        public EmbeddingTable getTable() {
+            return table;
+        }
+
+        public IvfIndex getIndex() {
+            return index;
+        }
+    }
+
+    private final GraphService graphService;
+    private final long seed;
+    private final long refreshIntervalMs;
+    private final int annLists;
+    private final int annIterations;
+    private final int nprobe;
+    private final AtomicLong versions = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Model current;
+
+    public GnnEmbeddingService(
+        GraphService graphService,
+        @Value("${app.gnn.seed:42}") long seed,
+        @Value("${app.gnn.refresh-interval-ms:600000}") long refreshIntervalMs,
+        @Value("${app.gnn.ann.lists:0}") int annLists,
+        @Value("${app.gnn.ann.iterations:5}") int annIterations,
+        @Value("${app.gnn.ann.nprobe:8}") int nprobe
+    ) {
+        this.graphService = graphService;
+        this.seed = seed;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.annLists = annLists;
+        this.annIterations = annIterations;
+        this.nprobe = nprobe;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gnn-embeddings");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                System.out.println("[WARN] GNN embedding refresh failed: " + e.getMessage());
+            }
+        }, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public int getNprobe() {
+        return nprobe;
+    }
+
+    public Model model() {
+        Model model = current;
+        if (model != null) return model;
+        // First request before the initial scheduled run finished
+        synchronized (this) {
+            return current != null ? current : refresh();
+        }
+    }
+
+    public synchronized Model refresh() {
+        long started = System.currentTimeMillis();
+        CsrGraph graph = graphService.snapshot();
+        int numNodes = graph.vertexCount();
+
+        // Random Gaussian features, drawn in id order from a fixed seed
+        float[] features = new float[Math.multiplyExact(numNodes, EMBEDDING_SIZE)];
+        Random random = new Random(seed);
+        for (int i = 0; i < features.length; i++) {
+            features[i] = (float) random.nextGaussian();
+        }
+
+        float[] embeddings = SparsePropagation.propagate(graph, features, EMBEDDING_SIZE, LAYERS);
+        SparsePropagation.normalizeRows(embeddings, numNodes, EMBEDDING_SIZE);
+
+        EmbeddingTable table = new EmbeddingTable(graph, embeddings, EMBEDDING_SIZE, versions.incrementAndGet());
+        int lists = annLists > 0 ? annLists : Math.min(1024, (int) Math.sqrt(numNodes));
+        IvfIndex index = IvfIndex.build(table, lists, annIterations, seed);
+
+        Model model = new Model(table, index);
+        current = model;
+        System.out.println("[INFO] GNN embeddings v" + table.getVersion() + " ready: " + numNodes + " users, "
+            + index.lists() + " IVF lists, " + (System.currentTimeMillis() - started) + " ms");
+        return model;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.instarecommender.services;
+
+import java.util.List;
+
+import com.example.instarecommender.models.WeightUpdate;
+
+// Notified by GraphService after a write has been applied to the repository
+public interface GraphMutationListener {
+    default void onUserAdded(String user) {
+    }
+
+    default void onEdgeUpdated(String from, String to, double weight) {
+    }
+
+    default void onWeightsUpdated(List<WeightUpdate> updates) {
+    }
+
+    default void onGlobalDecay(double factor) {
+    }
+
+    // Called under the store's write lock when it starts building a snapshot view, on stores
+    // whose snapshot() lags the writes; the returned action (null for none) runs once that
+    // view has been published
+    default Runnable onViewCut() {
+        return null;
+    }
+}
@@ -1,23 +1,69 @@
 package com.example.instarecommender.services;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
 
+import com.example.instarecommender.loader.BulkGraphLoader;
+import com.example.instarecommender.loader.GraphSnapshotStore;
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.CandidateIndex;
 import com.example.instarecommender.repositories.GraphRepository;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.CsrGraphFile;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 
 @Service
 public class GraphService {
+    // A copy of the graph and the mutation log segment that continues from it
+    public static final class Checkpoint {
+        public final CsrGraph graph;
+        public final long logPosition;
+
+        Checkpoint(CsrGraph graph, long logPosition) {
+            this.graph = graph;
+            this.logPosition = logPosition;
+        }
+    }
+
     private final GraphRepository graphRepository;
+    private final BulkGraphLoader bulkGraphLoader;
+    private final GraphSnapshotStore snapshotStore;
+    private final MutationLog mutationLog;
+    private final MeterRegistry meterRegistry;
+    private final List<GraphMutationListener> mutationListeners = new CopyOnWriteArrayList<>();
+    // Held while a write is applied and appended to the mutation log, so the log order is the
+    // order the store saw; a checkpoint takes it too so a write is either in the copy or after it.
+    // With the log on, every write goes through it one at a time, which bounds ingest throughput
+    // by the store's single-write latency.
+    private final Object mutationOrder = new Object();
+    private volatile boolean logging;
 
-    public GraphService(GraphRepository graphRepository) {
+    public GraphService(GraphRepository graphRepository, BulkGraphLoader bulkGraphLoader,
+                        GraphSnapshotStore snapshotStore, MutationLog mutationLog, MeterRegistry meterRegistry) {
         this.graphRepository = graphRepository;
+        this.bulkGraphLoader = bulkGraphLoader;
+        this.snapshotStore = snapshotStore;
+        this.mutationLog = mutationLog;
+        this.meterRegistry = meterRegistry;
+        graphRepository.setViewListener(this::cutView);
+    }
+
+    public void addMutationListener(GraphMutationListener listener) {
+        mutationListeners.add(listener);
     }
 
     public List<Map<String, Object>> getGraph() {
@@ -25,19 +71,69 @@ public class GraphService {
     }
 
     public void addOrUpdateEdge(String from, String to, double weight) {
-        graphRepository.addOrUpdateEdge(from, to, weight);
+        mutate(() -> graphRepository.addOrUpdateEdge(from, to, weight), l -> l.onEdgeUpdated(from, to, weight));
     }
 
     public Set<String> getFollowing(String user) {
         return graphRepository.getFollowing(user);
     }
 
+    public CompletableFuture<Set<String>> getFollowingAsync(String user) {
+        return graphRepository.getFollowingAsync(user);
+    }
+
     public Set<String> getFollowers(String user) {
         return graphRepository.getFollowers(user);
     }
 
+    public Map<String, Set<String>> getFollowingBatch(Collection<String> users) {
+        return graphRepository.getFollowingBatch(users);
+    }
+
+    public Map<String, Set<String>> getFollowersBatch(Collection<String> users) {
+        return graphRepository.getFollowersBatch(users);
+    }
+
+    public Map<String, Map<String, Double>> getWeightsBatch(Collection<String> users) {
+        return graphRepository.getWeightsBatch(users);
+    }
+
     public void addUser(String user) {
-        graphRepository.addUser(user);
+        mutate(() -> graphRepository.addUser(user), l -> l.onUserAdded(user));
+    }
+
+    public boolean supportsSnapshots() {
+        return graphRepository.supportsSnapshots();
+    }
+
+    public boolean isDurable() {
+        return graphRepository.isDurable();
+    }
+
+    // Only the in-memory strategies and services call this, and they only run on stores with a view
+    public CsrGraph snapshot() {
+        return graphRepository.snapshot().orElseThrow(() ->
+            new IllegalStateException("The " + graphRepository.getClass().getSimpleName() + " store has no CSR snapshot"));
+    }
+
+    // snapshot() can miss writes GraphService has already reported to the listeners
+    public boolean snapshotLags() {
+        return graphRepository.snapshotLags();
+    }
+
+    public CandidateIndex getCandidateIndex() {
+        return graphRepository.candidateIndex();
+    }
+
+    public Checkpoint checkpoint() throws IOException {
+        synchronized (mutationOrder) {
+            long position = logging ? mutationLog.rotate() : 0;
+            return new Checkpoint(graphRepository.checkpoint(), position);
+        }
+    }
+
+    public MutationLog getMutationLog() {
+        return mutationLog;
     }
 
     public GraphRepository getGraphRepository() {
@@ -46,12 +142,30 @@ public class GraphService {
 
     @PostConstruct
     public void initializeGraph() {
+        // Runs before any listener has registered, so nothing needs to be notified
+        long started = System.nanoTime();
+        String source = "storage";
+        long logPosition = 0;
         if (graphRepository.isGraphEmpty()) {
-            System.out.println("[INFO] Graph is empty. Initializing from file...");
-            loadGraphFromFile();
+            source = "snapshot";
+            logPosition = restoreSnapshot();
+            if (logPosition < 0) {
+                System.out.println("[INFO] Graph is empty. Initializing from " + bulkGraphLoader.getPath() + "...");
+                source = "import";
+                bulkGraphLoader.load();
+                logPosition = 0;
+            }
         } else {
             System.out.println("[INFO] Graph data found in storage. Skipping file load.");
         }
+        record(Timer.builder("graph.initialize").description("Loading the graph on startup").tag("source", source), started);
+
+        // Neo4j is durable on its own; the in-memory stores replay their log and keep appending
+        if (mutationLog.isEnabled() && graphRepository.supportsSnapshots() && !graphRepository.isDurable()) {
+            started = System.nanoTime();
+            openMutationLog(logPosition);
+            record(Timer.builder("graph.log.replay").description("Replaying the mutation log on startup"), started);
+        }
 
         if (graphRepository.supportsGds()) {
             System.out.println("[INFO] Creating GDS projection...");
@@ -61,23 +175,55 @@ public class GraphService {
         }
     }
 
+    private void record(Timer.Builder timer, long startedNanos) {
+        timer.register(meterRegistry).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Returns the log position stored with the snapshot, or -1 when there was none to restore
+    private long restoreSnapshot() {
+        if (!graphRepository.supportsSnapshots() || graphRepository.isDurable() || !snapshotStore.exists()) return -1;
+        long started = System.currentTimeMillis();
+        try {
+            CsrGraphFile.Image image = snapshotStore.read();
+            graphRepository.restore(image.graph);
+            System.out.println("[INFO] Graph restored from snapshot " + snapshotStore.getPath() + " (" + image.graph.vertexCount()
+                + " users, " + image.graph.edgeCount() + " edges) in " + (System.currentTimeMillis() - started) + " ms");
+            return image.logPosition;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[WARN] Could not restore snapshot " + snapshotStore.getPath() + ", falling back to "
+                + bulkGraphLoader.getPath() + ": " + e.getMessage());
+            graphRepository.clear();
+            return -1;
+        }
+    }
+
+    private void openMutationLog(long fromSegment) {
+        long started = System.currentTimeMillis();
+        try {
+            long replayed = mutationLog.open(graphRepository, fromSegment);
+            System.out.println("[INFO] Replayed " + replayed + " logged mutations in " + (System.currentTimeMillis() - started) + " ms");
+            logging = true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[WARN] Could not open the mutation log, writes will not survive a restart: " + e.getMessage());
+        }
+    }
 
-    private void loadGraphFromFile() {
-        try(BufferedReader reader = new BufferedReader(new FileReader("graph.csv"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-               String[] parts = line.split(",");
-               if (parts.length >= 3) {
-                   String from = parts[0].trim();
-                   String to = parts[1].trim();
-                   double weight = Double.parseDouble(parts[2].trim());
-                   addOrUpdateEdge(from, to, weight);
-               }
+    private void mutate(Runnable write, Consumer<GraphMutationListener> event) {
+        long sequence = 0;
+        if (logging) {
+            synchronized (mutationOrder) {
+                // Refuse the write before it reaches memory when it could not be logged
+                mutationLog.checkHealthy();
+                write.run();
+                event.accept(mutationLog);
+                sequence = mutationLog.lastSequence();
             }
-            System.out.println("[INFO] Graph data loaded from graph.csv.");
-        } catch (Exception e) {
-            System.out.println("[WARN] No graph.csv found or error reading file: " + e.getMessage());
+        } else {
+            write.run();
         }
+        // With fsync=always this waits for the group commit, outside the lock
+        if (sequence > 0) mutationLog.awaitDurable(sequence);
+        mutationListeners.forEach(event);
     }
 
     public double getConnectionWeight(String from, String to) {
@@ -85,7 +231,36 @@ public class GraphService {
     }
 
     public void updateConnectionWeight(String from, String to, double newWeight) {
-        graphRepository.updateConnectionWeight(from, to, newWeight);
+        mutate(() -> graphRepository.updateConnectionWeight(from, to, newWeight), l -> l.onEdgeUpdated(from, to, newWeight));
+    }
+
+    public void applyWeightUpdates(List<WeightUpdate> updates) {
+        if (updates.isEmpty()) return;
+        mutate(() -> graphRepository.applyWeightUpdates(updates), l -> l.onWeightsUpdated(updates));
+    }
+
+    public void applyGlobalDecay(double factor) {
+        if (!(factor > 0 && factor <= 1)) {
+            throw new IllegalArgumentException("Decay factor must be in (0, 1]: " + factor);
+        }
+        mutate(() -> graphRepository.applyGlobalDecay(factor), l -> l.onGlobalDecay(factor));
+    }
+
+    public List<String> getAllUsers() {
+        Optional<CsrGraph> snapshot = graphRepository.snapshot();
+        if (snapshot.isPresent()) {
+            CsrGraph graph = snapshot.get();
+            List<String> users = new ArrayList<>(graph.vertexCount());
+            for (int v = 0; v < graph.vertexCount(); v++) {
+                users.add(graph.userAt(v));
+            }
+            return users;
+        }
+        return new ArrayList<>(graphRepository.getAllConnections().keySet());
+    }
+
+    public Map<String, Object> getStorageStats() {
+        return graphRepository.getStorageStats();
     }
 
     //getAllConnections
@@ -93,4 +268,13 @@ public class GraphService {
         return graphRepository.getAllConnections();
     }
 
+
+    private Runnable cutView() {
+        List<Runnable> published = new ArrayList<>();
+        for (GraphMutationListener listener : mutationListeners) {
+            Runnable action = listener.onViewCut();
+            if (action != null) published.add(action);
+        }
+        return published.isEmpty() ? null : () -> published.forEach(Runnable::run);
+    }
 }
@@ -0,0 +1,84 @@
+package com.example.instarecommender.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.loader.GraphSnapshotStore;
+import com.example.instarecommender.models.WeightUpdate;
+
+import jakarta.annotation.PreDestroy;
+
+// Persists the in-memory graph as a binary snapshot every app.snapshot.interval-ms when it
+// has changed, and once more on shutdown. Each snapshot is also a mutation log checkpoint:
+// the log segments it covers are deleted, which keeps replay on startup short.
+@Service
+@Profile("in-memory")
+public class GraphSnapshotService implements GraphMutationListener {
+
+    private final GraphService graphService;
+    private final GraphSnapshotStore store;
+    // Mutations not covered by the last written snapshot
+    private final AtomicLong unsaved = new AtomicLong();
+
+    public GraphSnapshotService(GraphService graphService, GraphSnapshotStore store) {
+        this.graphService = graphService;
+        this.store = store;
+        graphService.addMutationListener(this);
+    }
+
+    @Scheduled(fixedDelayString = "${app.snapshot.interval-ms:300000}",
+               initialDelayString = "${app.snapshot.interval-ms:300000}")
+    public void saveIfChanged() {
+        if (unsaved.get() > 0) save();
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        if (unsaved.get() > 0 || !store.exists()) save();
+    }
+
+    public synchronized boolean save() {
+        // A durable store (the hybrid one) already keeps the graph; its replica needs no copy on disk
+        if (!store.isEnabled() || !graphService.supportsSnapshots() || graphService.isDurable()) return false;
+        long covered = unsaved.get();
+        long started = System.currentTimeMillis();
+        try {
+            GraphService.Checkpoint checkpoint = graphService.checkpoint();
+            long bytes = store.write(checkpoint.graph, checkpoint.logPosition);
+            unsaved.addAndGet(-covered);
+            // Only once the snapshot is on disk; until then replay still starts from the old one
+            if (checkpoint.logPosition > 0) graphService.getMutationLog().truncateBefore(checkpoint.logPosition);
+            System.out.println("[INFO] Wrote graph snapshot " + store.getPath() + " (" + checkpoint.graph.vertexCount() + " users, "
+                + checkpoint.graph.edgeCount() + " edges, " + bytes + " bytes) in " + (System.currentTimeMillis() - started) + " ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[WARN] Failed to write graph snapshot " + store.getPath() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void onUserAdded(String user) {
+        unsaved.incrementAndGet();
+    }
+
+    @Override
+    public void onEdgeUpdated(String from, String to, double weight) {
+        unsaved.incrementAndGet();
+    }
+
+    @Override
+    public void onWeightsUpdated(List<WeightUpdate> updates) {
+        unsaved.addAndGet(updates.size());
+    }
+
+    @Override
+    public void onGlobalDecay(double factor) {
+        unsaved.incrementAndGet();
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.instarecommender.services;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.models.InteractionType;
+import com.example.instarecommender.models.WeightUpdate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Takes interactions off the request path. They are queued in a bounded buffer and a single
+// flusher thread drains them in windows of up to flushIntervalMs or maxBatch events. Every
+// interaction on the same (from, to) pair inside a window is folded into one WeightUpdate, so
+// a burst of likes on one account becomes a single write with the same decay and increments.
+@Service
+public class InteractionIngestionService {
+
+    private static final class Interaction {
+        final String from;
+        final String to;
+        final InteractionType type;
+
+        Interaction(String from, String to, InteractionType type) {
+            this.from = from;
+            this.to = to;
+            this.type = type;
+        }
+    }
+
+    private final GraphService graphService;
+    private final BlockingQueue<Interaction> queue;
+    private final int maxBatch;
+    private final long flushIntervalMs;
+    private final Thread flusher;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Timer flushTimer;
+    private final DistributionSummary flushInteractions;
+    private final DistributionSummary flushPairs;
+
+    private volatile boolean running = true;
+
+    public InteractionIngestionService(
+        GraphService graphService,
+        MeterRegistry meterRegistry,
+        @Value("${app.ingest.queue-capacity:10000}") int queueCapacity,
+        @Value("${app.ingest.max-batch:1000}") int maxBatch,
+        @Value("${app.ingest.flush-interval-ms:50}") long flushIntervalMs
+    ) {
+        this.graphService = graphService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flusher = new Thread(this::run, "interaction-ingest");
+        this.flusher.setDaemon(true);
+
+        this.acceptedCounter = Counter.builder("interactions.submitted")
+            .description("Interactions offered to the ingestion queue")
+            .tag("outcome", "accepted")
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("interactions.submitted")
+            .description("Interactions offered to the ingestion queue")
+            .tag("outcome", "rejected")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("interactions.flush")
+            .description("Folding a window of interactions and writing it to the graph")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.flushInteractions = DistributionSummary.builder("interactions.flush.interactions")
+            .description("Interactions per flushed window")
+            .register(meterRegistry);
+        this.flushPairs = DistributionSummary.builder("interactions.flush.pairs")
+            .description("Distinct (from, to) pairs written per flushed window")
+            .register(meterRegistry);
+        Gauge.builder("interactions.queue.size", queue, BlockingQueue::size)
+            .description("Interactions waiting to be flushed")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(5));
+        // Whatever was accepted but not written yet
+        List<Interaction> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        flush(remaining);
+    }
+
+    // Returns false when the queue is full; the caller should ask the client to retry later
+    public boolean submit(String from, String to, InteractionType type) {
+        if (queue.offer(new Interaction(from, to, type))) {
+            accepted.incrementAndGet();
+            acceptedCounter.increment();
+            return true;
+        }
+        rejected.incrementAndGet();
+        rejectedCounter.increment();
+        return false;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "queued", queue.size(),
+            "capacity", queue.size() + queue.remainingCapacity(),
+            "accepted", accepted.get(),
+            "rejected", rejected.get(),
+            "writtenPairs", flushed.get()
+        );
+    }
+
+    private void run() {
+        List<Interaction> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Interaction first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Keep collecting until the window closes or the batch is full
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) break;
+                    Interaction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running) break;
+            }
+            flush(batch);
+            batch.clear();
+        }
+        // Events still in hand when interrupted are written here; stop() drains the rest
+        flush(batch);
+    }
+
+    private void flush(List<Interaction> batch) {
+        if (batch.isEmpty()) return;
+        long started = System.nanoTime();
+        // Per-pair composition in arrival order, so the result matches applying them one by one
+        Map<String, Map<String, WeightUpdate>> pending = new LinkedHashMap<>();
+        int pairs = 0;
+        for (Interaction interaction : batch) {
+            Map<String, WeightUpdate> targets = pending.computeIfAbsent(interaction.from, k -> new LinkedHashMap<>());
+            WeightUpdate update = targets.get(interaction.to);
+            if (update == null) {
+                update = WeightUpdate.identity(interaction.from, interaction.to);
+                pairs++;
+            }
+            targets.put(interaction.to, DynamicWeightService.withInteraction(update, interaction.type));
+        }
+
+        List<WeightUpdate> updates = new ArrayList<>(pairs);
+        pending.values().forEach(targets -> updates.addAll(targets.values()));
+        try {
+            graphService.applyWeightUpdates(updates);
+            flushed.addAndGet(updates.size());
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] Failed to write " + updates.size() + " interaction updates ("
+                + batch.size() + " interactions): " + e.getMessage());
+        }
+        flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        flushInteractions.record(batch.size());
+        flushPairs.record(updates.size());
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.instarecommender.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.GraphRepository;
+
+import jakarta.annotation.PreDestroy;
+
+// Append-only log of graph mutations for the in-memory stores. GraphService feeds it through
+// the listener methods in the order the store applied the writes. Writers only serialize the
+// record and copy it into a shared buffer; a background thread writes whole buffers (group
+// commit) and fsyncs according to the policy:
+//   always   - a write returns once its record is on disk; concurrent writers share an fsync
+//   interval - fsync at most every fsyncIntervalMs, writers never wait (default)
+//   none     - leave flushing to the OS
+// The log is split into numbered segments. A checkpoint rotates to a new segment, and once the
+// snapshot taken at that point is on disk the older segments are deleted. On boot the segments
+// from the snapshot's position onwards are replayed in order, up to the first torn record or
+// missing segment.
+@Component
+public class MutationLog implements GraphMutationListener {
+
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NONE }
+
+    private static final byte USER_ADDED = 1;
+    private static final byte EDGE_UPDATED = 2;
+    private static final byte WEIGHTS_UPDATED = 3;
+    private static final byte GLOBAL_DECAY = 4;
+
+    private static final String SEGMENT_PREFIX = "mutations-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final boolean enabled;
+    private final Path dir;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    // Serializes channel writes and rotation; always taken before the monitor on `this`
+    private final Object ioLock = new Object();
+
+    // Guarded by `this`
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(1 << 16);
+    private long appended;
+    private long durable;
+    private boolean running;
+    private IOException failure;
+
+    // Guarded by ioLock
+    private FileChannel channel;
+    private long segment;
+    private long lastSyncAt;
+    private boolean unsynced;
+
+    private Thread writer;
+
+    public MutationLog(
+        @Value("${app.wal.enabled:true}") boolean enabled,
+        @Value("${app.wal.dir:wal}") String dir,
+        @Value("${app.wal.fsync:interval}") String fsyncPolicy,
+        @Value("${app.wal.fsync-interval-ms:100}") long fsyncIntervalMs
+    ) {
+        this.enabled = enabled;
+        this.dir = Paths.get(dir);
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase());
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized boolean isOpen() {
+        return running;
+    }
+
+    // Replays every segment numbered fromSegment or later into the repository, then opens a
+    // fresh segment for new records. Returns the number of records replayed.
+    public long open(GraphRepository repository, long fromSegment) throws IOException {
+        Files.createDirectories(dir);
+        List<Long> segments = listSegments();
+        long replayed = 0;
+        long last = segments.isEmpty() ? fromSegment - 1 : Math.max(fromSegment - 1, segments.get(segments.size() - 1));
+        boolean torn = false;
+        long next = Math.max(fromSegment, 1);
+        for (long id : segments) {
+            Path path = segmentPath(id);
+            if (id < fromSegment) {
+                // Already covered by the snapshot; left behind by a crash before truncation
+                Files.deleteIfExists(path);
+                continue;
+            }
+            if (!torn && id != next) {
+                // Segments are numbered without holes, so the records before this one are gone;
+                // typically the snapshot they were truncated for could not be read
+                torn = true;
+                System.out.println("[WARN] Mutation log segment " + next + " is missing, so " + path
+                    + " and later segments do not continue the loaded graph. Their writes are NOT replayed");
+            }
+            next = id + 1;
+            if (torn) {
+                // Replaying past a gap would apply relative updates to the wrong state
+                Files.move(path, path.resolveSibling(path.getFileName() + ".skipped"));
+                System.out.println("[WARN] Skipped mutation log " + path + " after a torn or missing segment");
+            } else {
+                long records = replay(path, repository);
+                torn = records < 0;
+                replayed += torn ? -records - 1 : records;
+                if (torn) System.out.println("[WARN] Mutation log " + path + " ended in a torn record and was cut back");
+            }
+        }
+        synchronized (ioLock) {
+            segment = Math.max(last + 1, 1);
+            channel = openSegment(segment);
+            lastSyncAt = System.currentTimeMillis();
+        }
+        synchronized (this) {
+            running = true;
+        }
+        writer = new Thread(this::run, "mutation-log");
+        writer.setDaemon(true);
+        writer.start();
+        return replayed;
+    }
+
+    // Starts a new segment and returns its number. Everything appended before the call is in
+    // older segments, so a snapshot taken before the next append only needs this one onwards.
+    public long rotate() throws IOException {
+        synchronized (ioLock) {
+            writePending(true);
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        }
+    }
+
+    // Deletes the segments a snapshot written at `segment` made redundant
+    public void truncateBefore(long segment) throws IOException {
+        for (long id : listSegments()) {
+            if (id < segment) Files.deleteIfExists(segmentPath(id));
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        Thread t = writer;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            notifyAll();
+        }
+        t.join(TimeUnit.SECONDS.toMillis(5));
+        synchronized (ioLock) {
+            writePending(true);
+            channel.close();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (this) {
+            return Map.of(
+                "enabled", enabled,
+                "fsync", fsyncPolicy.name().toLowerCase(),
+                "appendedRecords", appended,
+                "durableRecords", durable,
+                "bufferedBytes", pending.size()
+            );
+        }
+    }
+
+    @Override
+    public void onUserAdded(String user) {
+        append(out -> {
+            out.writeByte(USER_ADDED);
+            out.writeUTF(user);
+        });
+    }
+
+    @Override
+    public void onEdgeUpdated(String from, String to, double weight) {
+        append(out -> {
+            out.writeByte(EDGE_UPDATED);
+            out.writeUTF(from);
+            out.writeUTF(to);
+            out.writeDouble(weight);
+        });
+    }
+
+    @Override
+    public void onWeightsUpdated(List<WeightUpdate> updates) {
+        append(out -> {
+            out.writeByte(WEIGHTS_UPDATED);
+            out.writeInt(updates.size());
+            for (WeightUpdate update : updates) {
+                out.writeUTF(update.getFrom());
+                out.writeUTF(update.getTo());
+                out.writeDouble(update.getScale());
+                out.writeDouble(update.getOffset());
+                out.writeDouble(update.getCap());
+            }
+        });
+    }
+
+    @Override
+    public void onGlobalDecay(double factor) {
+        append(out -> {
+            out.writeByte(GLOBAL_DECAY);
+            out.writeDouble(factor);
+        });
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(RecordWriter record) {
+        // Serialized on the caller's thread, outside the lock
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            record.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] data = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data, 8, data.length - 8);
+        ByteBuffer.wrap(data).putInt(data.length - 8).putInt((int) crc.getValue());
+
+        synchronized (this) {
+            // Fails closed like a failed writer: a record the log cannot take must not be acknowledged
+            checkHealthy();
+            pending.write(data, 0, data.length);
+            appended++;
+            notifyAll();
+        }
+    }
+
+    // Throws when the background writer has failed or the log is not open, so a write can be
+    // refused before it is applied
+    public synchronized void checkHealthy() {
+        if (failure != null) throw new UncheckedIOException("Mutation log is failing", failure);
+        if (!running) throw new IllegalStateException("Mutation log is not open");
+    }
+
+    public synchronized long lastSequence() {
+        return appended;
+    }
+
+    // Returns once the record with this sequence number is durable under the fsync policy.
+    // The mutation is already applied in memory; this only delays the acknowledgement.
+    public void awaitDurable(long sequence) {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) return;
+        synchronized (this) {
+            boolean interrupted = false;
+            while (durable < sequence && running && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (durable < sequence && failure != null) {
+                throw new UncheckedIOException("Mutation log is failing", failure);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                while (running && pending.size() == 0) {
+                    try {
+                        wait(fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncIntervalMs : 0);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (fsyncPolicy == FsyncPolicy.INTERVAL && pending.size() == 0) break;
+                }
+                if (!running) return;
+            }
+            try {
+                synchronized (ioLock) {
+                    boolean sync = fsyncPolicy == FsyncPolicy.ALWAYS
+                        || (fsyncPolicy == FsyncPolicy.INTERVAL && System.currentTimeMillis() - lastSyncAt >= fsyncIntervalMs);
+                    writePending(sync);
+                }
+            } catch (IOException e) {
+                System.out.println("[WARN] Mutation log write failed: " + e.getMessage());
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    // Caller holds ioLock
+    private void writePending(boolean sync) throws IOException {
+        ByteArrayOutputStream batch;
+        long upTo;
+        synchronized (this) {
+            batch = pending;
+            upTo = appended;
+            if (batch.size() > 0) pending = new ByteArrayOutputStream(Math.max(1 << 16, batch.size()));
+        }
+        if (batch.size() > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            unsynced = true;
+        }
+        if (sync && unsynced && fsyncPolicy != FsyncPolicy.NONE) {
+            channel.force(false);
+            unsynced = false;
+            lastSyncAt = System.currentTimeMillis();
+        }
+        if (sync || fsyncPolicy != FsyncPolicy.ALWAYS) {
+            synchronized (this) {
+                durable = Math.max(durable, upTo);
+                notifyAll();
+            }
+        }
+    }
+
+    // Number of records applied, or -(records + 1) when the segment ends in a torn or corrupt
+    // record; the segment is then cut back to the last good record.
+    private long replay(Path path, GraphRepository repository) throws IOException {
+        long records = 0;
+        long goodBytes = 0;
+        byte[] data = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.remaining() > 0) {
+            if (buffer.remaining() < 8) return truncated(path, goodBytes, records);
+            int length = buffer.getInt();
+            int expected = buffer.getInt();
+            if (length < 1 || length > buffer.remaining()) return truncated(path, goodBytes, records);
+            CRC32 crc = new CRC32();
+            crc.update(data, buffer.position(), length);
+            if ((int) crc.getValue() != expected) return truncated(path, goodBytes, records);
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, buffer.position(), length))) {
+                apply(in, repository);
+            } catch (EOFException e) {
+                return truncated(path, goodBytes, records);
+            }
+            buffer.position(buffer.position() + length);
+            goodBytes = buffer.position();
+            records++;
+        }
+        return records;
+    }
+
+    private static long truncated(Path path, long goodBytes, long records) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(goodBytes);
+        }
+        return -(records + 1);
+    }
+
+    private static void apply(DataInputStream in, GraphRepository repository) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case USER_ADDED -> repository.addUser(in.readUTF());
+            case EDGE_UPDATED -> repository.addOrUpdateEdge(in.readUTF(), in.readUTF(), in.readDouble());
+            case WEIGHTS_UPDATED -> {
+                int count = in.readInt();
+                List<WeightUpdate> updates = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    updates.add(new WeightUpdate(in.readUTF(), in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble()));
+                }
+                repository.applyWeightUpdates(updates);
+            }
+            case GLOBAL_DECAY -> repository.applyGlobalDecay(in.readDouble());
+            default -> throw new IOException("Unknown mutation log record type " + type);
+        }
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return ids;
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                .forEach(name -> ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.instarecommender.services;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Global weighted PageRank kept in a primitive array and refreshed off the request path.
+// Writes mark the vector dirty; a refresh runs at most maxStalenessMs later and warm-starts
+// from the previous vector, so after small changes it converges in a handful of iterations.
+@Service
+@Profile("in-memory")
+public class PageRankService implements GraphMutationListener {
+
+    public static final class Scores {
+        private final CsrGraph graph;
+        private final double[] ranks;
+        private final int iterations;
+        private final long computedAt;
+
+        Scores(CsrGraph graph, double[] ranks, int iterations, long computedAt) {
+            this.graph = graph;
+            this.ranks = ranks;
+            this.iterations = iterations;
+            this.computedAt = computedAt;
+        }
+
+        public CsrGraph getGraph() {
+            return graph;
+        }
+
+        public int size() {
+            return ranks.length;
+        }
+
+        public double rank(int v) {
+            return ranks[v];
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public long getComputedAt() {
+            return computedAt;
+        }
+    }
+
+    private final GraphService graphService;
+    private final double dampingFactor;
+    private final int maxIterations;
+    private final double tolerance;
+    private final long maxStalenessMs;
+    private final ScheduledExecutorService refresher;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private volatile Scores current;
+
+    public PageRankService(
+        GraphService graphService,
+        @Value("${app.pagerank.damping-factor:0.85}") double dampingFactor,
+        @Value("${app.pagerank.max-iterations:100}") int maxIterations,
+        @Value("${app.pagerank.tolerance:0.0001}") double tolerance,
+        @Value("${app.pagerank.max-staleness-ms:5000}") long maxStalenessMs
+    ) {
+        this.graphService = graphService;
+        this.dampingFactor = dampingFactor;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.maxStalenessMs = maxStalenessMs;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pagerank-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        graphService.addMutationListener(this);
+    }
+
+    @PostConstruct
+    public void start() {
+        refresher.execute(this::refreshQuietly);
+    }
+
+    @PreDestroy
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    public Scores scores() {
+        Scores scores = current;
+        if (scores != null) return scores;
+        // First request before the initial background run finished
+        synchronized (this) {
+            if (current == null) refresh();
+            return current;
+        }
+    }
+
+    @Override
+    public void onUserAdded(String user) {
+        scheduleRefresh();
+    }
+
+    @Override
+    public void onEdgeUpdated(String from, String to, double weight) {
+        scheduleRefresh();
+    }
+
+    @Override
+    public void onWeightsUpdated(List<WeightUpdate> updates) {
+        scheduleRefresh();
+    }
+
+    // Coalesces every write inside the staleness window into a single refresh
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            refresher.schedule(this::refreshQuietly, maxStalenessMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            synchronized (this) {
+                refresh();
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[WARN] PageRank refresh failed: " + e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        // Cleared before taking the snapshot so writes racing with the computation trigger another run
+        refreshScheduled.set(false);
+        CsrGraph graph = graphService.snapshot();
+        Scores previous = current;
+        current = compute(graph, previous == null ? null : previous.ranks);
+    }
+
+    Scores compute(CsrGraph graph, double[] warmStart) {
+        int n = graph.vertexCount();
+        double[] rank = new double[n];
+        if (n == 0) return new Scores(graph, rank, 0, System.currentTimeMillis());
+
+        int reused = warmStart == null ? 0 : Math.min(warmStart.length, n);
+        double total = 0;
+        for (int v = 0; v < n; v++) {
+            rank[v] = v < reused ? warmStart[v] : 1.0 / n;
+            total += rank[v];
+        }
+        for (int v = 0; v < n; v++) {
+            rank[v] /= total;
+        }
+
+        double[] outWeight = new double[n];
+        for (int v = 0; v < n; v++) {
+            for (int i = graph.outStart(v); i < graph.outEnd(v); i++) {
+                outWeight[v] += Math.max(graph.outWeight(i), 0f);
+            }
+        }
+
+        double[] contribution = new double[n];
+        double[] next = new double[n];
+        int iteration = 0;
+        while (iteration < maxIterations) {
+            iteration++;
+            double danglingMass = 0;
+            for (int v = 0; v < n; v++) {
+                if (outWeight[v] > 0) {
+                    contribution[v] = rank[v] / outWeight[v];
+                } else {
+                    contribution[v] = 0;
+                    danglingMass += rank[v];
+                }
+            }
+
+            // Pull over in-edges: each follower passes rank in proportion to the edge weight
+            double teleport = (1 - dampingFactor) / n + dampingFactor * danglingMass / n;
+            double delta = 0;
+            for (int v = 0; v < n; v++) {
+                double sum = 0;
+                for (int i = graph.inStart(v); i < graph.inEnd(v); i++) {
+                    sum += Math.max(graph.inWeight(i), 0f) * contribution[graph.inSource(i)];
+                }
+                next[v] = teleport + dampingFactor * sum;
+                delta += Math.abs(next[v] - rank[v]);
+            }
+
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            if (delta < tolerance) break;
+        }
+
+        return new Scores(graph, rank, iteration, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.instarecommender.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.instarecommender.models.AlgorithmTypes;
+import com.example.instarecommender.models.Recommendation;
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.models.WeightUpdate;
+
+// LRU + TTL cache of recommendation results keyed by (user, algorithm, limit bucket).
+// Every entry records the users whose adjacency it was computed from: the user, the users
+// they follow, and the returned candidates. A write on (from, to) drops only the entries
+// that depend on `from` or `to`. Effects further away than that (e.g. global PageRank or
+// embedding refreshes) are bounded by the TTL. On stores whose snapshot view trails the
+// writes, a result computed right after a write can still come from the older view, so the
+// written users are invalidated again once a view holding the write has been published.
+@Service
+public class RecommendationCache implements GraphMutationListener {
+
+    // Results are computed for the bucket and trimmed, so limit=10 and limit=12 share an entry
+    private static final int MIN_LIMIT_BUCKET = 16;
+    // Larger requests are rare and would pin big lists, so they bypass the cache
+    private static final int MAX_CACHED_LIMIT = 1024;
+    // Followee reads in flight for asynchronous fills; fills beyond it are dropped
+    private static final int MAX_PENDING_FILLS = 1024;
+
+    private static final class Key {
+        final String user;
+        final AlgorithmTypes algorithm;
+        final int limitBucket;
+
+        Key(String user, AlgorithmTypes algorithm, int limitBucket) {
+            this.user = user;
+            this.algorithm = algorithm;
+            this.limitBucket = limitBucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return limitBucket == other.limitBucket && algorithm == other.algorithm && user.equals(other.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, algorithm, limitBucket);
+        }
+    }
+
+    private static final class Entry {
+        final RecommendationResponse response;
+        final Set<String> dependencies;
+        final long expiresAt;
+
+        Entry(RecommendationResponse response, Set<String> dependencies, long expiresAt) {
+            this.response = response;
+            this.dependencies = dependencies;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final GraphService graphService;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final AtomicInteger pendingFills = new AtomicInteger();
+
+    // All state below is guarded by `this`
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // user -> cached entries that read that user's adjacency
+    private final Map<String, Set<Key>> dependents = new HashMap<>();
+    // Lets a result computed while a write was in flight be detected and not cached:
+    // user -> generation of its last invalidation. Forgotten in bulk by raising floorGeneration.
+    private final Map<String, Long> lastInvalidated = new HashMap<>();
+    private long generation;
+    private long floorGeneration;
+    // Users invalidated since the store last started building a view, or every user once
+    // the set outgrows maxEntries; only used when the store's snapshot lags its writes
+    private Set<String> awaitingView = new HashSet<>();
+    private boolean awaitingAll;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+    private long droppedFills;
+
+    public RecommendationCache(
+        GraphService graphService,
+        @Value("${app.cache.enabled:true}") boolean enabled,
+        @Value("${app.cache.max-entries:10000}") int maxEntries,
+        @Value("${app.cache.ttl-ms:60000}") long ttlMs
+    ) {
+        this.graphService = graphService;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        graphService.addMutationListener(this);
+    }
+
+    public RecommendationResponse getOrCompute(String user, AlgorithmTypes algorithm, int limit,
+                                               IntFunction<RecommendationResponse> compute) {
+        if (!enabled || limit <= 0 || limit > MAX_CACHED_LIMIT) return compute.apply(limit);
+
+        Key key = new Key(user, algorithm, bucketFor(limit));
+        long started;
+        synchronized (this) {
+            RecommendationResponse cached = lookup(key);
+            if (cached != null) return trim(cached, limit);
+            started = generation;
+        }
+
+        RecommendationResponse response = compute.apply(key.limitBucket);
+        store(key, response, started);
+        return trim(response, limit);
+    }
+
+    // Same as getOrCompute for a computation that may complete later. A result that arrives on
+    // another thread, such as the driver's event loop, reads the user's followees for its
+    // dependencies through the store's non-blocking read and is filled when that completes; the
+    // caller has the result before then. Fills dropped at the cap or by a failed read are
+    // counted in the stats.
+    public CompletableFuture<RecommendationResponse> getOrComputeAsync(String user, AlgorithmTypes algorithm, int limit,
+                                                                       IntFunction<CompletableFuture<RecommendationResponse>> compute) {
+        if (!enabled || limit <= 0 || limit > MAX_CACHED_LIMIT) return compute.apply(limit);
+
+        Key key = new Key(user, algorithm, bucketFor(limit));
+        long started;
+        synchronized (this) {
+            RecommendationResponse cached = lookup(key);
+            if (cached != null) return CompletableFuture.completedFuture(trim(cached, limit));
+            started = generation;
+        }
+
+        CompletableFuture<RecommendationResponse> computing = compute.apply(key.limitBucket);
+        // Strategies that computed on this thread fill inline, exactly like getOrCompute
+        boolean completedHere = computing.isDone();
+        return computing.thenApply(response -> {
+            if (completedHere) {
+                store(key, response, started);
+            } else {
+                fillAsync(key, response, started);
+            }
+            return trim(response, limit);
+        });
+    }
+
+    public synchronized void invalidateAll() {
+        clear();
+        if (graphService.snapshotLags()) awaitingAll = true;
+    }
+
+    // The users invalidated so far are all in the view the store is starting to build; once it
+    // is published, results computed from an older view are dropped and rejected a second time
+    @Override
+    public synchronized Runnable onViewCut() {
+        if (!awaitingAll && awaitingView.isEmpty()) return null;
+        boolean all = awaitingAll;
+        String[] users = awaitingView.toArray(new String[0]);
+        awaitingAll = false;
+        awaitingView = new HashSet<>();
+        return () -> {
+            synchronized (this) {
+                if (all) {
+                    clear();
+                } else {
+                    drop(users);
+                }
+            }
+        };
+    }
+
+    private void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        dependents.clear();
+        lastInvalidated.clear();
+        floorGeneration = ++generation;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long lookups = hits + misses;
+        stats.put("enabled", enabled);
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMs", ttlMs);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        stats.put("invalidations", invalidations);
+        stats.put("pendingFills", pendingFills.get());
+        stats.put("droppedFills", droppedFills);
+        stats.put("trackedUsers", dependents.size());
+        return stats;
+    }
+
+    @Override
+    public void onUserAdded(String user) {
+        invalidate(user);
+    }
+
+    @Override
+    public void onEdgeUpdated(String from, String to, double weight) {
+        invalidate(from, to);
+    }
+
+    @Override
+    public void onWeightsUpdated(List<WeightUpdate> updates) {
+        List<String> touched = new ArrayList<>(updates.size() * 2);
+        for (WeightUpdate update : updates) {
+            touched.add(update.getFrom());
+            touched.add(update.getTo());
+        }
+        invalidate(touched.toArray(new String[0]));
+    }
+
+    @Override
+    public void onGlobalDecay(double factor) {
+        // Weighted scores (e.g. the Neo4j Jaccard) do not scale uniformly
+        invalidateAll();
+    }
+
+    private synchronized void invalidate(String... users) {
+        drop(users);
+        if (awaitingAll || !graphService.snapshotLags()) return;
+        Collections.addAll(awaitingView, users);
+        if (awaitingView.size() > maxEntries) {
+            awaitingView.clear();
+            awaitingAll = true;
+        }
+    }
+
+    // Caller holds the lock
+    private void drop(String... users) {
+        long current = ++generation;
+        for (String user : users) {
+            lastInvalidated.put(user, current);
+            Set<Key> keys = dependents.remove(user);
+            if (keys == null) continue;
+            for (Key key : keys) {
+                if (remove(key)) invalidations++;
+            }
+        }
+        if (lastInvalidated.size() > maxEntries) {
+            lastInvalidated.clear();
+            floorGeneration = current;
+        }
+    }
+
+    private boolean changedSince(Set<String> dependencies, long started) {
+        if (started < floorGeneration) return true;
+        if (generation == started) return false;
+        for (String dependency : dependencies) {
+            Long invalidated = lastInvalidated.get(dependency);
+            if (invalidated != null && invalidated > started) return true;
+        }
+        return false;
+    }
+
+    private boolean remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) return false;
+        for (String dependency : entry.dependencies) {
+            Set<Key> keys = dependents.get(dependency);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) dependents.remove(dependency);
+        }
+        return true;
+    }
+
+    private void evictOverflow() {
+        while (entries.size() > maxEntries) {
+            // Access-ordered, so the first key is the least recently used
+            remove(entries.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    // Caller holds the lock. Null on a miss.
+    private RecommendationResponse lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits++;
+            return entry.response;
+        }
+        if (entry != null) {
+            remove(key);
+            expirations++;
+        }
+        misses++;
+        return null;
+    }
+
+    private void store(Key key, RecommendationResponse response, long started) {
+        store(key, response, started, graphService.getFollowing(key.user));
+    }
+
+    private void fillAsync(Key key, RecommendationResponse response, long started) {
+        if (pendingFills.incrementAndGet() > MAX_PENDING_FILLS) {
+            pendingFills.decrementAndGet();
+            fillDropped();
+            return;
+        }
+        CompletableFuture<Set<String>> following;
+        try {
+            following = graphService.getFollowingAsync(key.user);
+        } catch (RuntimeException e) {
+            following = CompletableFuture.failedFuture(e);
+        }
+        following.whenComplete((followees, error) -> {
+            pendingFills.decrementAndGet();
+            if (error == null) {
+                store(key, response, started, followees);
+            } else {
+                fillDropped();
+            }
+        });
+    }
+
+    private synchronized void fillDropped() {
+        droppedFills++;
+    }
+
+    private void store(Key key, RecommendationResponse response, long started, Set<String> following) {
+        Set<String> dependencies = dependenciesOf(key.user, following, response);
+        synchronized (this) {
+            if (!changedSince(dependencies, started)) {
+                remove(key);
+                entries.put(key, new Entry(response, dependencies, System.currentTimeMillis() + ttlMs));
+                for (String dependency : dependencies) {
+                    dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+                }
+                evictOverflow();
+            }
+        }
+    }
+
+    private Set<String> dependenciesOf(String user, Set<String> following, RecommendationResponse response) {
+        Set<String> dependencies = new HashSet<>(following);
+        dependencies.add(user);
+        for (Recommendation recommendation : response.getRecommendations()) {
+            dependencies.add(recommendation.getTargetUser());
+        }
+        return dependencies;
+    }
+
+    private static int bucketFor(int limit) {
+        return Math.max(MIN_LIMIT_BUCKET, Integer.highestOneBit(limit - 1) << 1);
+    }
+
+    private static RecommendationResponse trim(RecommendationResponse response, int limit) {
+        List<Recommendation> recommendations = response.getRecommendations();
+        List<Recommendation> trimmed = recommendations.size() <= limit
+            ? List.copyOf(recommendations)
+            : List.copyOf(recommendations.subList(0, limit));
+        RecommendationResponse copy = new RecommendationResponse(trimmed, response.getQuery(), response.getEmbeddingVersion());
+        copy.setPruned(response.getPruned());
+        return copy;
+    }
+}
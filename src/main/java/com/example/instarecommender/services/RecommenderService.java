@@ -1,23 +1,217 @@
 package com.example.instarecommender.services;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.springframework.stereotype.Service;
 
 import com.example.instarecommender.models.AlgorithmTypes;
 import com.example.instarecommender.models.RecommendationResponse;
 import com.example.instarecommender.recommenders.factory.RecommenderFactory;
 import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.recommenders.scoring.RecommendationTrace;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class RecommenderService {
+
+    private static final class InFlightKey {
+        final String user;
+        final AlgorithmTypes algorithm;
+        final int limit;
+
+        InFlightKey(String user, AlgorithmTypes algorithm, int limit) {
+            this.user = user;
+            this.algorithm = algorithm;
+            this.limit = limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof InFlightKey)) return false;
+            InFlightKey other = (InFlightKey) o;
+            return limit == other.limit && algorithm == other.algorithm && user.equals(other.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, algorithm, limit);
+        }
+    }
+
+    // Meters for one algorithm, registered up front so a request does no registry lookups
+    private static final class AlgorithmMeters {
+        final Timer requests;
+        final Timer compute;
+        final Timer[] stages;
+        final DistributionSummary candidates;
+        final DistributionSummary neighborFetches;
+
+        AlgorithmMeters(MeterRegistry registry, AlgorithmTypes algorithm) {
+            String tag = algorithm.name().toLowerCase();
+            requests = Timer.builder("recommendation.requests")
+                .description("Recommendation requests, cache hits included")
+                .tag("algorithm", tag)
+                .publishPercentileHistogram()
+                .register(registry);
+            compute = Timer.builder("recommendation.compute")
+                .description("Strategy calls on a cache miss")
+                .tag("algorithm", tag)
+                .publishPercentileHistogram()
+                .register(registry);
+            stages = new Timer[RecommendationTrace.stages().length];
+            for (RecommendationTrace.Stage stage : RecommendationTrace.stages()) {
+                stages[stage.ordinal()] = Timer.builder("recommendation.stage")
+                    .description("Time per stage of a strategy call")
+                    .tag("algorithm", tag)
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry);
+            }
+            candidates = DistributionSummary.builder("recommendation.candidates")
+                .description("Distinct candidates scored per strategy call")
+                .tag("algorithm", tag)
+                .publishPercentileHistogram()
+                .register(registry);
+            neighborFetches = DistributionSummary.builder("recommendation.neighbor.fetches")
+                .description("Adjacency lists read per strategy call")
+                .tag("algorithm", tag)
+                .publishPercentileHistogram()
+                .register(registry);
+        }
+
+        // trace is null for a call that completed on another thread: its stages are unknown
+        void record(long computeNanos, RecommendationTrace trace) {
+            compute.record(computeNanos, TimeUnit.NANOSECONDS);
+            if (trace == null) return;
+            for (RecommendationTrace.Stage stage : RecommendationTrace.stages()) {
+                if (trace.hasStage(stage)) stages[stage.ordinal()].record(trace.stageNanos(stage), TimeUnit.NANOSECONDS);
+            }
+            if (trace.getCandidates() >= 0) candidates.record(trace.getCandidates());
+            if (trace.hasStage(RecommendationTrace.Stage.CANDIDATES)) neighborFetches.record(trace.getNeighborFetches());
+        }
+    }
+
     private final RecommenderFactory recommenderFactory;
+    private final RecommendationCache cache;
+    private final Map<AlgorithmTypes, AlgorithmMeters> meters = new EnumMap<>(AlgorithmTypes.class);
+    // Computations currently running; identical concurrent requests wait on the same future
+    private final Map<InFlightKey, CompletableFuture<RecommendationResponse>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
 
-    public RecommenderService(RecommenderFactory recommenderFactory) {
+    public RecommenderService(RecommenderFactory recommenderFactory, RecommendationCache cache, MeterRegistry meterRegistry) {
         this.recommenderFactory = recommenderFactory;
+        this.cache = cache;
+        for (AlgorithmTypes algorithm : AlgorithmTypes.values()) {
+            meters.put(algorithm, new AlgorithmMeters(meterRegistry, algorithm));
+        }
     }
 
     public RecommendationResponse recommend(String user, AlgorithmTypes algorithm, int limit) {
         RecommenderStrategy strategy = recommenderFactory.getRecommender(algorithm);
-        return strategy.recommend(user, limit);
+        long started = System.nanoTime();
+        try {
+            return cache.getOrCompute(user, algorithm, limit, bucketLimit -> computeShared(strategy, user, algorithm, bucketLimit));
+        } finally {
+            meters.get(algorithm).requests.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Non-blocking variant: Neo4j strategies return while their query runs, everything else
+    // completes on the calling thread. Shares the cache and the in-flight map with recommend().
+    public CompletableFuture<RecommendationResponse> recommendAsync(String user, AlgorithmTypes algorithm, int limit) {
+        RecommenderStrategy strategy = recommenderFactory.getRecommender(algorithm);
+        Timer requests = meters.get(algorithm).requests;
+        long started = System.nanoTime();
+        CompletableFuture<RecommendationResponse> result;
+        try {
+            result = cache.getOrComputeAsync(user, algorithm, limit, bucketLimit -> computeSharedAsync(strategy, user, algorithm, bucketLimit));
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        return result.whenComplete((response, error) -> requests.record(System.nanoTime() - started, TimeUnit.NANOSECONDS));
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "inFlight", inFlight.size(),
+            "computed", computed.get(),
+            "coalesced", coalesced.get()
+        );
     }
-}
 
+    private RecommendationResponse computeShared(RecommenderStrategy strategy, String user, AlgorithmTypes algorithm, int limit) {
+        InFlightKey key = new InFlightKey(user, algorithm, limit);
+        CompletableFuture<RecommendationResponse> mine = new CompletableFuture<>();
+        CompletableFuture<RecommendationResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                // Same failure the leader got
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+
+        try {
+            RecommendationTrace trace = RecommendationTrace.start();
+            long started = System.nanoTime();
+            RecommendationResponse response = strategy.recommend(user, limit);
+            meters.get(algorithm).record(System.nanoTime() - started, trace);
+            computed.incrementAndGet();
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private CompletableFuture<RecommendationResponse> computeSharedAsync(RecommenderStrategy strategy, String user, AlgorithmTypes algorithm, int limit) {
+        InFlightKey key = new InFlightKey(user, algorithm, limit);
+        CompletableFuture<RecommendationResponse> mine = new CompletableFuture<>();
+        CompletableFuture<RecommendationResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return running.copy();
+        }
+
+        RecommendationTrace trace = RecommendationTrace.start();
+        long started = System.nanoTime();
+        CompletableFuture<RecommendationResponse> computing;
+        try {
+            computing = strategy.recommendAsync(user, limit);
+        } catch (RuntimeException e) {
+            computing = CompletableFuture.failedFuture(e);
+        }
+        // The thread-local trace is only this call's while we are still on this thread
+        RecommendationTrace completedTrace = computing.isDone() ? trace : null;
+        AlgorithmMeters algorithmMeters = meters.get(algorithm);
+        computing.whenComplete((response, error) -> {
+            if (error == null) {
+                algorithmMeters.record(System.nanoTime() - started, completedTrace);
+                computed.incrementAndGet();
+                mine.complete(response);
+            } else {
+                mine.completeExceptionally(error);
+            }
+            inFlight.remove(key, mine);
+        });
+        return mine.copy();
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.instarecommender.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Entry point for mvn -Pbenchmark test-compile exec:exec. Accepts the usual JMH command line
+// (e.g. -Djmh.args="RecommenderBenchmark -p algorithm=JACCARD") and always adds the GC
+// profiler, so every result comes with its allocation rate (gc.alloc.rate.norm is bytes/op).
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build()).run();
+	}
+}
@@ -0,0 +1,113 @@
+package com.example.instarecommender.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.example.instarecommender.models.InteractionType;
+import com.example.instarecommender.repositories.GraphRepository;
+import com.example.instarecommender.services.DynamicWeightService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Interaction updates per second through DynamicWeightService, the path every
+// /api/graph/interact call takes. Mostly existing edges with some new ones, as in production.
+// Run with -t to see how the stores behave under contending writers.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class DynamicWeightBenchmark {
+
+	private static final int SAMPLE = 1 << 16;
+	private static final InteractionType[] TYPES = InteractionType.values();
+
+	@Param({"csr", "in-memory"})
+	public String storageType;
+
+	@Param({"10000"})
+	public int vertices;
+
+	@Param({"200000"})
+	public int edges;
+
+	// Share of updates that hit a pair with no edge yet
+	@Param({"0.1"})
+	public double newEdgeRatio;
+
+	private GraphRepository repository;
+	private DynamicWeightService dynamicWeightService;
+	private String[] from;
+	private String[] to;
+	private InteractionType[] type;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		repository = SyntheticGraph.newRepository(storageType);
+		SyntheticGraph graph = SyntheticGraph.powerLaw(vertices, edges, 42);
+		graph.loadInto(repository);
+		dynamicWeightService = new DynamicWeightService(SyntheticGraph.newGraphService(repository), new SimpleMeterRegistry());
+
+		Random random = new Random(7);
+		from = new String[SAMPLE];
+		to = new String[SAMPLE];
+		type = new InteractionType[SAMPLE];
+		for (int i = 0; i < SAMPLE; i++) {
+			if (random.nextDouble() < newEdgeRatio) {
+				int f = random.nextInt(vertices);
+				from[i] = SyntheticGraph.user(f);
+				to[i] = SyntheticGraph.user((f + 1 + random.nextInt(vertices - 1)) % vertices);
+			} else {
+				int e = random.nextInt(graph.edges());
+				from[i] = graph.from(e);
+				to[i] = graph.to(e);
+			}
+			type[i] = TYPES[random.nextInt(TYPES.length)];
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		repository.shutdown();
+	}
+
+	@Benchmark
+	public void updateWeightBasedOnInteraction(Cursor cursor) {
+		int i = cursor.next();
+		dynamicWeightService.updateWeightBasedOnInteraction(from[i], to[i], type[i]);
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		// Threads start spread over the sample so they do not all update the same pair
+		@Setup(Level.Trial)
+		public void setUp(ThreadParams thread) {
+			next = thread.getThreadIndex() * (SAMPLE / thread.getThreadCount());
+		}
+
+		int next() {
+			next = (next + 1) & (SAMPLE - 1);
+			return next;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.instarecommender.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.instarecommender.loader.BulkGraphLoader;
+import com.example.instarecommender.repositories.GraphRepository;
+
+// Startup import of a graph.csv-format edge list into an empty store. Each invocation loads
+// the whole file into a fresh repository.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GraphLoadBenchmark {
+
+	@Param({"csr", "in-memory"})
+	public String storageType;
+
+	@Param({"100000"})
+	public int vertices;
+
+	@Param({"1000000"})
+	public int edges;
+
+	// 0 uses every core, as in app.graph.import.parallelism
+	@Param({"0", "1"})
+	public int parallelism;
+
+	private Path csv;
+	private GraphRepository repository;
+	private BulkGraphLoader loader;
+
+	@Setup(Level.Trial)
+	public void writeEdgeList() throws IOException {
+		csv = Files.createTempFile("synthetic-graph", ".csv");
+		SyntheticGraph.powerLaw(vertices, edges, 42).writeCsv(csv);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteEdgeList() throws IOException {
+		Files.deleteIfExists(csv);
+	}
+
+	@Setup(Level.Invocation)
+	public void newRepository() {
+		repository = SyntheticGraph.newRepository(storageType);
+		loader = new BulkGraphLoader(repository, csv.toString(), 10_000, parallelism, 64, Long.MAX_VALUE);
+	}
+
+	@TearDown(Level.Invocation)
+	public void shutdownRepository() {
+		repository.shutdown();
+	}
+
+	@Benchmark
+	public GraphRepository load() {
+		if (!loader.load()) throw new IllegalStateException("Could not load " + csv);
+		return repository;
+	}
+}
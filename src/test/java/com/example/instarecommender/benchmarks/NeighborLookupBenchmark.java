@@ -0,0 +1,96 @@
+package com.example.instarecommender.benchmarks;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.instarecommender.repositories.GraphRepository;
+
+// Point reads on the repositories: the lookups every recommender is built from
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighborLookupBenchmark {
+
+	private static final int SAMPLE = 4096;
+
+	@Param({"csr", "in-memory"})
+	public String storageType;
+
+	@Param({"10000"})
+	public int vertices;
+
+	@Param({"200000"})
+	public int edges;
+
+	private GraphRepository repository;
+	private String[] users;
+	private String[] edgeFrom;
+	private String[] edgeTo;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		repository = SyntheticGraph.newRepository(storageType);
+		SyntheticGraph graph = SyntheticGraph.powerLaw(vertices, edges, 42);
+		graph.loadInto(repository);
+
+		Random random = new Random(7);
+		users = new String[SAMPLE];
+		edgeFrom = new String[SAMPLE];
+		edgeTo = new String[SAMPLE];
+		for (int i = 0; i < SAMPLE; i++) {
+			users[i] = SyntheticGraph.user(random.nextInt(vertices));
+			int e = random.nextInt(graph.edges());
+			edgeFrom[i] = graph.from(e);
+			edgeTo[i] = graph.to(e);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		repository.shutdown();
+	}
+
+	@Benchmark
+	public Set<String> getFollowing(Cursor cursor) {
+		return repository.getFollowing(users[cursor.next()]);
+	}
+
+	@Benchmark
+	public Set<String> getFollowers(Cursor cursor) {
+		return repository.getFollowers(users[cursor.next()]);
+	}
+
+	@Benchmark
+	public double getConnectionWeight(Cursor cursor) {
+		int i = cursor.next();
+		return repository.getConnectionWeight(edgeFrom[i], edgeTo[i]);
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		int next() {
+			next = (next + 1) % SAMPLE;
+			return next;
+		}
+	}
+}
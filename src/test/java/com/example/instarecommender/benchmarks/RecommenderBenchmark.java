@@ -0,0 +1,115 @@
+package com.example.instarecommender.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.instarecommender.models.AlgorithmTypes;
+import com.example.instarecommender.models.RecommendationResponse;
+import com.example.instarecommender.recommenders.factory.InMemoryRecommenderFactory;
+import com.example.instarecommender.recommenders.factory.RecommenderStrategy;
+import com.example.instarecommender.repositories.GraphRepository;
+import com.example.instarecommender.services.GnnEmbeddingService;
+import com.example.instarecommender.services.GraphService;
+import com.example.instarecommender.services.PageRankService;
+
+// One recommend() call per operation, for every in-memory strategy on both in-memory stores.
+// PageRank scores and GNN embeddings are computed in setup, as the background refreshers
+// would have done, so only the per-request work is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommenderBenchmark {
+
+	@Param({"csr", "in-memory"})
+	public String storageType;
+
+	@Param({"JACCARD", "COMMON_NEIGHBORS", "PAGERANK", "ADAMIC_ADAR", "GNN_EMBEDDING", "PERSONALIZED_PAGERANK"})
+	public AlgorithmTypes algorithm;
+
+	@Param({"10000"})
+	public int vertices;
+
+	@Param({"200000"})
+	public int edges;
+
+	@Param({"10"})
+	public int limit;
+
+	// Neighbourhood strategies only; 0 expands every row in full
+	@Param({"1000"})
+	public int maxNeighborsPerHop;
+
+	@Param({"0"})
+	public int superNodeDegree;
+
+	private GraphRepository repository;
+	private PageRankService pageRankService;
+	private GnnEmbeddingService gnnEmbeddingService;
+	private RecommenderStrategy strategy;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		repository = SyntheticGraph.newRepository(storageType);
+		SyntheticGraph.powerLaw(vertices, edges, 42).loadInto(repository);
+		GraphService graphService = SyntheticGraph.newGraphService(repository);
+		pageRankService = new PageRankService(graphService, 0.85, 100, 0.0001, Long.MAX_VALUE);
+		gnnEmbeddingService = new GnnEmbeddingService(graphService, 42, Long.MAX_VALUE, 0, 5, 8);
+		pageRankService.scores();
+		gnnEmbeddingService.model();
+		strategy = new InMemoryRecommenderFactory(graphService, pageRankService, gnnEmbeddingService, 2000, 32, 20, 0.15,
+				maxNeighborsPerHop, 100_000, superNodeDegree, 42)
+			.getRecommender(algorithm);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pageRankService.stop();
+		gnnEmbeddingService.stop();
+		repository.shutdown();
+	}
+
+	@Benchmark
+	public RecommendationResponse recommend(Users users) {
+		return strategy.recommend(users.next(), limit);
+	}
+
+	// Cycles through a fixed random sample of users, so every thread sees the same mix
+	@State(Scope.Thread)
+	public static class Users {
+		private static final int SAMPLE = 1024;
+
+		private final String[] users = new String[SAMPLE];
+		private int next;
+
+		@Setup(Level.Trial)
+		public void setUp(RecommenderBenchmark benchmark) {
+			Random random = new Random(7);
+			for (int i = 0; i < SAMPLE; i++) {
+				users[i] = SyntheticGraph.user(random.nextInt(benchmark.vertices));
+			}
+		}
+
+		String next() {
+			String user = users[next];
+			next = (next + 1) % SAMPLE;
+			return user;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.example.instarecommender.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.instarecommender.repositories.GraphRepository;
+
+// Heap each store retains per edge once a graph is imported and published, measured as the
+// growth of the used heap across full GCs, next to the adjacencyBytes the store reports for
+// itself. For the in-memory store that report rests on the assumed ESTIMATED_BYTES_PER_EDGE,
+// which this is the check for. Both figures include the interned user names.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+// The serial collector leaves nothing half-collected behind a System.gc()
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class StorageFootprintBenchmark {
+
+	@Param({"csr", "in-memory"})
+	public String storageType;
+
+	@Param({"100000"})
+	public int vertices;
+
+	@Param({"1000000"})
+	public int edges;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Footprint {
+		public double measuredBytesPerEdge;
+		public double reportedBytesPerEdge;
+	}
+
+	private SyntheticGraph graph;
+	private GraphRepository repository;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		graph = SyntheticGraph.powerLaw(vertices, edges, 42);
+	}
+
+	@TearDown(Level.Invocation)
+	public void shutdownRepository() {
+		repository.shutdown();
+		repository = null;
+	}
+
+	@Benchmark
+	public GraphRepository load(Footprint footprint) throws InterruptedException {
+		long before = usedHeapAfterGc();
+		repository = SyntheticGraph.newRepository(storageType);
+		graph.loadInto(repository);
+		repository.checkpoint();
+		long after = usedHeapAfterGc();
+
+		Map<String, Object> stats = repository.getStorageStats();
+		long stored = ((Number) stats.get("edges")).longValue();
+		footprint.measuredBytesPerEdge = (double) (after - before) / stored;
+		footprint.reportedBytesPerEdge = (((Number) stats.get("adjacencyBytes")).longValue()
+			+ ((Number) stats.getOrDefault("idTableBytes", 0L)).longValue()) / (double) stored;
+		return repository;
+	}
+
+	private static long usedHeapAfterGc() throws InterruptedException {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		// Stop once a collection frees nothing more
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(50);
+			long now = memory.getHeapMemoryUsage().getUsed();
+			if (now >= used) break;
+			used = now;
+		}
+		return used;
+	}
+}
@@ -0,0 +1,182 @@
+package com.example.instarecommender.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import com.example.instarecommender.loader.BulkGraphLoader;
+import com.example.instarecommender.loader.GraphSnapshotStore;
+import com.example.instarecommender.repositories.BulkEdgeWriter;
+import com.example.instarecommender.repositories.CsrGraphRepository;
+import com.example.instarecommender.repositories.EdgeBatch;
+import com.example.instarecommender.repositories.GraphRepository;
+import com.example.instarecommender.repositories.InMemoryGraphRepository;
+import com.example.instarecommender.services.GraphService;
+import com.example.instarecommender.services.MutationLog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Seeded social graph with power-law in- and out-degrees (Chung-Lu style: both endpoints are
+// drawn with probability proportional to rank^(-1/(exponent-1))), so a few users follow and
+// are followed by many while most have a handful of edges. The same arguments always give
+// the same edges. No self-loops and no duplicate pairs.
+public final class SyntheticGraph {
+
+	public static final double DEFAULT_EXPONENT = 2.1;
+
+	private final int vertices;
+	private final int[] from;
+	private final int[] to;
+	private final double[] weight;
+
+	private SyntheticGraph(int vertices, int[] from, int[] to, double[] weight) {
+		this.vertices = vertices;
+		this.from = from;
+		this.to = to;
+		this.weight = weight;
+	}
+
+	public static SyntheticGraph powerLaw(int vertices, int edges, long seed) {
+		return powerLaw(vertices, edges, DEFAULT_EXPONENT, seed);
+	}
+
+	public static SyntheticGraph powerLaw(int vertices, int edges, double exponent, long seed) {
+		if (vertices < 2) throw new IllegalArgumentException("Need at least two vertices");
+		if (edges > (long) vertices * (vertices - 1) / 2) throw new IllegalArgumentException("Too many edges for " + vertices + " vertices");
+
+		Random random = new Random(seed);
+		double[] cumulative = cumulativeWeights(vertices, exponent);
+		// Independent rank orders, so the most followed users are not also the most following
+		int[] outRank = permutation(vertices, random);
+		int[] inRank = permutation(vertices, random);
+
+		int[] from = new int[edges];
+		int[] to = new int[edges];
+		double[] weight = new double[edges];
+		Set<Long> seen = new HashSet<>(edges * 2);
+		int n = 0;
+		while (n < edges) {
+			int f = outRank[sample(cumulative, random)];
+			int t = inRank[sample(cumulative, random)];
+			if (f == t || !seen.add(((long) f << 32) | t)) continue;
+			from[n] = f;
+			to[n] = t;
+			// Same range as the interaction weights: 0.5 to 10 in steps of 0.5
+			weight[n] = 0.5 * (1 + random.nextInt(20));
+			n++;
+		}
+		return new SyntheticGraph(vertices, from, to, weight);
+	}
+
+	public static String user(int v) {
+		return "user" + v;
+	}
+
+	public int vertices() {
+		return vertices;
+	}
+
+	public int edges() {
+		return from.length;
+	}
+
+	public String from(int e) {
+		return user(from[e]);
+	}
+
+	public String to(int e) {
+		return user(to[e]);
+	}
+
+	public double weight(int e) {
+		return weight[e];
+	}
+
+	public void loadInto(GraphRepository repository) {
+		for (int v = 0; v < vertices; v++) {
+			repository.addUser(user(v));
+		}
+		BulkEdgeWriter writer = repository.openBulkWriter();
+		EdgeBatch batch = new EdgeBatch(10_000);
+		for (int e = 0; e < from.length; e++) {
+			batch.add(from(e), to(e), weight[e]);
+			if (batch.isFull()) {
+				writer.write(batch);
+				batch = new EdgeBatch(batch.capacity());
+			}
+		}
+		if (batch.size() > 0) writer.write(batch);
+		writer.close();
+	}
+
+	// Same format as graph.csv: from,to,weight
+	public void writeCsv(Path path) throws IOException {
+		try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			for (int e = 0; e < from.length; e++) {
+				out.write(from(e));
+				out.write(',');
+				out.write(to(e));
+				out.write(',');
+				out.write(Double.toString(weight[e]));
+				out.write('\n');
+			}
+		}
+	}
+
+	// The repository types behind app.graph.storage-type, with the application defaults
+	public static GraphRepository newRepository(String storageType) {
+		return switch (storageType) {
+			case "csr" -> new CsrGraphRepository(4096, 1000);
+			case "in-memory" -> new InMemoryGraphRepository(200);
+			default -> throw new IllegalArgumentException("Unknown storage type " + storageType);
+		};
+	}
+
+	// A GraphService with no snapshot and no mutation log, so benchmarks measure the store alone
+	public static GraphService newGraphService(GraphRepository repository) {
+		return new GraphService(
+			repository,
+			new BulkGraphLoader(repository, "graph.csv", 10_000, 0, 64, Long.MAX_VALUE),
+			new GraphSnapshotStore(false, "graph.snapshot"),
+			new MutationLog(false, "wal", "none", 100),
+			new SimpleMeterRegistry());
+	}
+
+	private static double[] cumulativeWeights(int vertices, double exponent) {
+		double[] cumulative = new double[vertices];
+		double total = 0;
+		for (int rank = 0; rank < vertices; rank++) {
+			total += Math.pow(rank + 1, -1.0 / (exponent - 1));
+			cumulative[rank] = total;
+		}
+		for (int rank = 0; rank < vertices; rank++) {
+			cumulative[rank] /= total;
+		}
+		return cumulative;
+	}
+
+	private static int sample(double[] cumulative, Random random) {
+		int i = Arrays.binarySearch(cumulative, random.nextDouble());
+		return Math.min(i >= 0 ? i : -i - 1, cumulative.length - 1);
+	}
+
+	private static int[] permutation(int n, Random random) {
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		return order;
+	}
+}
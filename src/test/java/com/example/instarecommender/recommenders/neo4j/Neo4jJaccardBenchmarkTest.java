@@ -0,0 +1,103 @@
+package com.example.instarecommender.recommenders.neo4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Session;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+// Times the single-pass Jaccard query against the multi-MATCH query it replaced, on a seeded
+// power-law graph in an embedded Neo4j; Neo4jJaccardRecommenderTest checks its scores.
+// Run with: mvn test -Pbenchmark
+@Tag("benchmark")
+class Neo4jJaccardBenchmarkTest {
+
+	private static final int USERS = 5_000;
+	private static final int EDGES_PER_USER = 20;
+	private static final long SEED = 42;
+	private static final int SAMPLED_USERS = 50;
+	private static final int LIMIT = 10;
+	private static final int UNCAPPED = Integer.MAX_VALUE;
+
+	private static final String LEGACY_QUERY =
+		"MATCH (u:User {id: $userId})-[r1:FOLLOWS]->()-[r2:FOLLOWS]->(candidate) " +
+		"WHERE u.id <> candidate.id " +
+		"MATCH (u)-[r3:FOLLOWS]->(common)-[r4:FOLLOWS]->(candidate) " +
+		"WITH u, candidate, sum(r3.weight * r4.weight) AS weightedIntersection, collect(DISTINCT common) AS commonUsers " +
+		"MATCH (u)-[r5:FOLLOWS]->(userFollows) " +
+		"WITH candidate, weightedIntersection, commonUsers, sum(r5.weight) AS userTotalWeight " +
+		"MATCH (candidate)<-[r6:FOLLOWS]-(follower) " +
+		"WITH candidate, weightedIntersection, userTotalWeight, sum(r6.weight) AS candidateTotalWeight " +
+		"WITH candidate, weightedIntersection / (userTotalWeight + candidateTotalWeight - weightedIntersection) AS score " +
+		"WHERE score > 0 " +
+		"RETURN candidate.id AS user, score " +
+		"ORDER BY score DESC, user ASC " +
+		"LIMIT $limit";
+
+	private static Neo4j neo4j;
+	private static Driver driver;
+	private static Map<String, Map<String, Double>> following;
+	private static List<String> sample;
+
+	@BeforeAll
+	static void startDatabase() {
+		neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+		driver = GraphDatabase.driver(neo4j.boltURI(), AuthTokens.none());
+		following = Neo4jJaccardRecommenderTest.generate(USERS, EDGES_PER_USER, SEED);
+		Neo4jJaccardRecommenderTest.load(driver, following);
+
+		Random random = new Random(SEED + 1);
+		List<String> users = new ArrayList<>(following.keySet());
+		sample = new ArrayList<>();
+		for (int i = 0; i < SAMPLED_USERS; i++) {
+			sample.add(users.get(random.nextInt(users.size())));
+		}
+	}
+
+	@AfterAll
+	static void stopDatabase() {
+		if (driver != null) driver.close();
+		if (neo4j != null) neo4j.close();
+	}
+
+	@Test
+	void compareWithLegacyQuery() {
+		Neo4jJaccardRecommender uncapped = new Neo4jJaccardRecommender(driver, UNCAPPED, UNCAPPED);
+		Neo4jJaccardRecommender capped = new Neo4jJaccardRecommender(driver, 500, 1000);
+
+		// One untimed pass each so both plans are cached
+		runLegacy(sample.get(0));
+		uncapped.recommend(sample.get(0), LIMIT);
+		capped.recommend(sample.get(0), LIMIT);
+
+		long legacy = time(() -> sample.forEach(Neo4jJaccardBenchmarkTest::runLegacy));
+		long single = time(() -> sample.forEach(u -> uncapped.recommend(u, LIMIT)));
+		long cappedNanos = time(() -> sample.forEach(u -> capped.recommend(u, LIMIT)));
+
+		System.out.printf("[INFO] Jaccard on %d users / %d edges, %d requests: legacy %.2f ms/req, single-pass %.2f ms/req, capped %.2f ms/req%n",
+			USERS, USERS * EDGES_PER_USER, sample.size(),
+			legacy / 1e6 / sample.size(), single / 1e6 / sample.size(), cappedNanos / 1e6 / sample.size());
+	}
+
+	private static void runLegacy(String user) {
+		try (Session session = driver.session()) {
+			session.run(LEGACY_QUERY, Map.of("userId", user, "limit", LIMIT)).consume();
+		}
+	}
+
+	private static long time(Runnable work) {
+		long start = System.nanoTime();
+		work.run();
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,164 @@
+package com.example.instarecommender.recommenders.neo4j;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.AuthTokens;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.GraphDatabase;
+import org.neo4j.driver.Session;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+import com.example.instarecommender.benchmarks.SyntheticGraph;
+import com.example.instarecommender.models.Recommendation;
+
+// Checks the single-pass Jaccard query against a weighted Jaccard (sum of min over sum of max)
+// computed in Java, on a seeded power-law graph with weights from 0.5 to 10 in an embedded
+// Neo4j. Every fifth edge only comes from interactions (isFollowing = false), so it scores but
+// does not exclude its target.
+class Neo4jJaccardRecommenderTest {
+
+	private static final int USERS = 1_000;
+	private static final int EDGES_PER_USER = 10;
+	private static final long SEED = 42;
+	private static final int SAMPLED_USERS = 50;
+	private static final int LIMIT = 10;
+	private static final int UNCAPPED = Integer.MAX_VALUE;
+
+	private static Neo4j neo4j;
+	private static Driver driver;
+	private static Map<String, Map<String, Double>> following;
+	private static Set<String> explicitFollows;
+	private static List<String> sample;
+
+	@BeforeAll
+	static void startDatabase() {
+		neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+		driver = GraphDatabase.driver(neo4j.boltURI(), AuthTokens.none());
+		following = generate(USERS, EDGES_PER_USER, SEED);
+		explicitFollows = load(driver, following);
+
+		Random random = new Random(SEED + 1);
+		List<String> users = new ArrayList<>(following.keySet());
+		sample = new ArrayList<>();
+		for (int i = 0; i < SAMPLED_USERS; i++) {
+			sample.add(users.get(random.nextInt(users.size())));
+		}
+	}
+
+	@AfterAll
+	static void stopDatabase() {
+		if (driver != null) driver.close();
+		if (neo4j != null) neo4j.close();
+	}
+
+	@Test
+	void singlePassQueryMatchesReferenceScores() {
+		Neo4jJaccardRecommender recommender = new Neo4jJaccardRecommender(driver, UNCAPPED, UNCAPPED);
+		for (String user : sample) {
+			List<Recommendation> actual = recommender.recommend(user, LIMIT).getRecommendations();
+			List<Map.Entry<String, Double>> expected = reference(user);
+			assertEquals(expected.size(), actual.size(), "result size for " + user);
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getValue(), actual.get(i).getScore(), 1e-9, "score " + i + " for " + user);
+			}
+		}
+	}
+
+	// Products of weights above 1 used to outgrow the union and push the best overlaps below zero
+	@Test
+	void heavyWeightsStayBetweenZeroAndOne() {
+		try (Session session = driver.session()) {
+			session.run(
+				"UNWIND $rows AS row " +
+				"MERGE (a:User {id: row[0]}) " +
+				"MERGE (b:User {id: row[1]}) " +
+				"MERGE (a)-[r:FOLLOWS]->(b) SET r.weight = row[2], r.isFollowing = true",
+				Map.of("rows", List.of(
+					List.of("heavy-u", "heavy-f1", 10.0), List.of("heavy-u", "heavy-f2", 10.0),
+					List.of("heavy-f1", "heavy-same", 10.0), List.of("heavy-f2", "heavy-same", 10.0),
+					List.of("heavy-f1", "heavy-light", 1.0)))).consume();
+		}
+
+		List<Recommendation> actual = new Neo4jJaccardRecommender(driver, UNCAPPED, UNCAPPED)
+			.recommend("heavy-u", LIMIT).getRecommendations();
+		assertEquals(2, actual.size());
+		// Identical weight vectors: min = max on every shared account
+		assertEquals("heavy-same", actual.get(0).getTargetUser());
+		assertEquals(1.0, actual.get(0).getScore(), 1e-9);
+		// min(10, 1) / (20 + 1 - 1)
+		assertEquals("heavy-light", actual.get(1).getTargetUser());
+		assertEquals(0.05, actual.get(1).getScore(), 1e-9);
+		actual.forEach(r -> assertTrue(r.getScore() > 0 && r.getScore() <= 1, r.getTargetUser() + " scored " + r.getScore()));
+	}
+
+	// Weighted Jaccard over the full neighbourhood, skipping the user and whoever they explicitly follow
+	private static List<Map.Entry<String, Double>> reference(String user) {
+		Map<String, Double> followees = following.getOrDefault(user, Map.of());
+		double userTotal = followees.values().stream().mapToDouble(Double::doubleValue).sum();
+		Map<String, Double> intersection = new HashMap<>();
+		followees.forEach((common, w1) -> following.getOrDefault(common, Map.of()).forEach((candidate, w2) -> {
+			if (!candidate.equals(user) && !explicitFollows.contains(user + "->" + candidate)) {
+				intersection.merge(candidate, Math.min(w1, w2), Double::sum);
+			}
+		}));
+
+		Map<String, Double> incoming = new HashMap<>();
+		following.values().forEach(out -> out.forEach((to, w) -> incoming.merge(to, w, Double::sum)));
+
+		List<Map.Entry<String, Double>> scores = new ArrayList<>();
+		intersection.forEach((candidate, i) -> {
+			if (i > 0) scores.add(Map.entry(candidate, i / (userTotal + incoming.get(candidate) - i)));
+		});
+		scores.sort(Comparator.<Map.Entry<String, Double>>comparingDouble(Map.Entry::getValue).reversed()
+			.thenComparing(Map.Entry::getKey));
+		return scores.subList(0, Math.min(LIMIT, scores.size()));
+	}
+
+	static Map<String, Map<String, Double>> generate(int users, int edgesPerUser, long seed) {
+		SyntheticGraph graph = SyntheticGraph.powerLaw(users, users * edgesPerUser, seed);
+		Map<String, Map<String, Double>> edges = new LinkedHashMap<>();
+		for (int e = 0; e < graph.edges(); e++) {
+			edges.computeIfAbsent(graph.from(e), u -> new LinkedHashMap<>()).put(graph.to(e), graph.weight(e));
+		}
+		return edges;
+	}
+
+	// Returns the "from->to" pairs loaded with isFollowing = true
+	static Set<String> load(Driver driver, Map<String, Map<String, Double>> edges) {
+		List<Map<String, Object>> rows = new ArrayList<>();
+		Set<String> explicit = new HashSet<>();
+		edges.forEach((from, out) -> out.forEach((to, weight) -> {
+			boolean follows = rows.size() % 5 != 0;
+			if (follows) explicit.add(from + "->" + to);
+			rows.add(Map.of("from", from, "to", to, "weight", weight, "isFollowing", follows));
+		}));
+		try (Session session = driver.session()) {
+			session.run("CREATE CONSTRAINT user_id IF NOT EXISTS FOR (u:User) REQUIRE u.id IS UNIQUE").consume();
+			for (int i = 0; i < rows.size(); i += 10_000) {
+				List<Map<String, Object>> batch = rows.subList(i, Math.min(i + 10_000, rows.size()));
+				session.executeWrite(tx -> tx.run(
+					"UNWIND $rows AS row " +
+					"MERGE (a:User {id: row.from}) " +
+					"MERGE (b:User {id: row.to}) " +
+					"MERGE (a)-[r:FOLLOWS]->(b) SET r.weight = row.weight, r.isFollowing = row.isFollowing",
+					Map.of("rows", batch)).consume());
+			}
+		}
+		return explicit;
+	}
+}
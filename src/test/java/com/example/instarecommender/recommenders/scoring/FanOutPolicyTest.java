@@ -0,0 +1,151 @@
+package com.example.instarecommender.recommenders.scoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+import com.example.instarecommender.repositories.csr.IdInterner;
+
+class FanOutPolicyTest {
+
+	private static final int USER = 0;
+
+	@Test
+	void unlimitedPolicyCountsEveryPath() {
+		Random random = new Random(7);
+		List<float[]> edges = new ArrayList<>();
+		for (int i = 0; i < 2_000; i++) {
+			int from = random.nextInt(100);
+			int to = random.nextInt(100);
+			if (from != to) edges.add(new float[] {from, to, 1});
+		}
+		CsrGraph graph = graph(100, edges);
+
+		Map<Integer, Integer> expected = new HashMap<>();
+		for (int f = graph.outStart(USER); f < graph.outEnd(USER); f++) {
+			int friend = graph.outTarget(f);
+			for (int c = graph.outStart(friend); c < graph.outEnd(friend); c++) {
+				if (graph.outTarget(c) != USER) expected.merge(graph.outTarget(c), 1, Integer::sum);
+			}
+		}
+
+		ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+		acc.exclude(USER);
+		assertFalse(FanOutPolicy.UNLIMITED.expandTwoHops(graph, USER, acc, friend -> 1.0));
+		assertEquals(expected, counts(acc));
+	}
+
+	// A-Res with k = 1 keeps an edge with probability weight / total weight
+	@Test
+	void sampleFavoursHeavyEdgesInProportionToWeight() {
+		CsrGraph graph = graph(4, List.of(
+			new float[] {USER, 1, 1}, new float[] {USER, 2, 3},
+			new float[] {1, 3, 1}, new float[] {2, 3, 1}));
+		int heavy = 0;
+		int runs = 4_000;
+		for (int seed = 0; seed < runs; seed++) {
+			ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+			acc.exclude(USER);
+			int[] reached = new int[1];
+			assertTrue(new FanOutPolicy(1, 0, 0, seed).expandTwoHops(graph, USER, acc, friend -> {
+				reached[0] = friend;
+				return 1.0;
+			}));
+			if (reached[0] == 2) heavy++;
+		}
+		assertTrue(Math.abs(heavy - runs * 0.75) < runs * 0.05, "heavy edge kept " + heavy + " times out of " + runs);
+	}
+
+	@Test
+	void sampleKeepsExactlyTheCapAndDependsOnlyOnTheSeed() {
+		List<float[]> edges = new ArrayList<>();
+		for (int friend = 1; friend <= 50; friend++) {
+			edges.add(new float[] {USER, friend, friend});
+			edges.add(new float[] {friend, 50 + friend, 1});
+		}
+		CsrGraph graph = graph(101, edges);
+
+		Map<Integer, Integer> first = expand(graph, new FanOutPolicy(10, 0, 0, 42));
+		assertEquals(10, first.size());
+		assertEquals(first, expand(graph, new FanOutPolicy(10, 0, 0, 42)));
+		assertNotEquals(first.keySet(), expand(graph, new FanOutPolicy(10, 0, 0, 43)).keySet());
+	}
+
+	@Test
+	void candidateCapStopsNewCandidatesButKeepsCountingKnownOnes() {
+		List<float[]> edges = new ArrayList<>();
+		for (int friend = 1; friend <= 5; friend++) {
+			edges.add(new float[] {USER, friend, 1});
+			for (int candidate = 10; candidate < 30; candidate++) {
+				edges.add(new float[] {friend, candidate, 1});
+			}
+		}
+		CsrGraph graph = graph(30, edges);
+
+		ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+		acc.exclude(USER);
+		assertTrue(new FanOutPolicy(0, 8, 0, 42).expandTwoHops(graph, USER, acc, friend -> 1.0));
+		Map<Integer, Integer> counts = counts(acc);
+		assertEquals(8, counts.size());
+		counts.values().forEach(count -> assertEquals(5, count));
+	}
+
+	@Test
+	void superNodesAreNotExpanded() {
+		List<float[]> edges = new ArrayList<>();
+		edges.add(new float[] {USER, 1, 1});
+		edges.add(new float[] {USER, 2, 1});
+		edges.add(new float[] {1, 3, 1});
+		for (int candidate = 3; candidate < 20; candidate++) {
+			edges.add(new float[] {2, candidate, 1});
+		}
+		CsrGraph graph = graph(20, edges);
+
+		ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+		acc.exclude(USER);
+		assertTrue(new FanOutPolicy(0, 0, 10, 42).expandTwoHops(graph, USER, acc, friend -> 1.0));
+		assertEquals(Map.of(3, 1), counts(acc));
+	}
+
+	private static Map<Integer, Integer> expand(CsrGraph graph, FanOutPolicy policy) {
+		ScoreAccumulator acc = ScoreAccumulator.acquire(graph.vertexCount());
+		acc.exclude(USER);
+		policy.expandTwoHops(graph, USER, acc, friend -> 1.0);
+		return counts(acc);
+	}
+
+	private static Map<Integer, Integer> counts(ScoreAccumulator acc) {
+		Map<Integer, Integer> counts = new HashMap<>();
+		for (int i = 0; i < acc.candidateCount(); i++) {
+			counts.put(acc.candidate(i), acc.count(acc.candidate(i)));
+		}
+		return counts;
+	}
+
+	// edges are {from, to, weight}
+	private static CsrGraph graph(int vertices, List<float[]> edges) {
+		IdInterner ids = new IdInterner();
+		for (int v = 0; v < vertices; v++) {
+			ids.intern("u" + v);
+		}
+		int[] from = new int[edges.size()];
+		int[] to = new int[edges.size()];
+		float[] weight = new float[edges.size()];
+		for (int e = 0; e < edges.size(); e++) {
+			from[e] = (int) edges.get(e)[0];
+			to[e] = (int) edges.get(e)[1];
+			weight[e] = edges.get(e)[2];
+		}
+		return CsrGraph.build(ids, vertices, from, to, weight, edges.size());
+	}
+}
@@ -0,0 +1,143 @@
+package com.example.instarecommender.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+class CandidateIndexTest {
+
+	private static final int USERS = 80;
+	private static final int FOLLOWS = 3_000;
+
+	private InMemoryGraphRepository repository;
+
+	@AfterEach
+	void tearDown() {
+		repository.shutdown();
+	}
+
+	@Test
+	void completeTablesMatchTraversal() {
+		Map<CandidateIndex.Answer, Integer> answers = run(new InMemoryGraphRepository(1, 100_000, Long.MAX_VALUE, Long.MAX_VALUE), 1, 10);
+		assertTrue(answers.get(CandidateIndex.Answer.COMPLETE) > 0);
+		assertEquals(0, answers.get(CandidateIndex.Answer.TRUNCATED));
+	}
+
+	@Test
+	void truncatedTablesKeepExactTopCandidates() {
+		Map<CandidateIndex.Answer, Integer> answers = run(new InMemoryGraphRepository(1, 4, Long.MAX_VALUE, Long.MAX_VALUE), 2, 4);
+		assertTrue(answers.get(CandidateIndex.Answer.TRUNCATED) > 0);
+	}
+
+	// Nothing is published while the follows come in, so every build catches up from the log
+	@Test
+	void buildsCatchUpWithFollowsAfterThePublishedView() {
+		Map<CandidateIndex.Answer, Integer> answers = run(new InMemoryGraphRepository(60_000, 8, Long.MAX_VALUE, Long.MAX_VALUE), 3, 8);
+		assertTrue(answers.get(CandidateIndex.Answer.COMPLETE) + answers.get(CandidateIndex.Answer.TRUNCATED) > 0);
+		assertTrue((long) stats().get("builds") > 0);
+	}
+
+	@Test
+	void evictedTablesAreRebuilt() {
+		run(new InMemoryGraphRepository(1, 16, 2_000, Long.MAX_VALUE), 4, 5);
+		assertTrue((long) stats().get("evictions") > 0);
+		assertTrue((long) stats().get("bytes") <= 2_000);
+	}
+
+	@Test
+	void followsOverTheUpdateWorkDropTables() {
+		run(new InMemoryGraphRepository(1, 16, Long.MAX_VALUE, 40), 5, 5);
+		assertTrue((long) stats().get("droppedOverUpdateWork") > 0);
+	}
+
+	// Follows random pairs (a few popular accounts get most of them) and after each batch asks
+	// the index about random users, checking every answer against the model graph
+	private Map<CandidateIndex.Answer, Integer> run(InMemoryGraphRepository repository, long seed, int limit) {
+		this.repository = repository;
+		Random random = new Random(seed);
+		Map<String, Set<String>> following = new HashMap<>();
+		Map<CandidateIndex.Answer, Integer> answers = new EnumMap<>(CandidateIndex.Answer.class);
+		for (CandidateIndex.Answer answer : CandidateIndex.Answer.values()) {
+			answers.put(answer, 0);
+		}
+
+		for (int i = 0; i < FOLLOWS; i++) {
+			String from = "u" + random.nextInt(USERS);
+			String to = "u" + (random.nextInt(4) == 0 ? random.nextInt(5) : random.nextInt(USERS));
+			if (from.equals(to)) continue;
+			repository.addOrUpdateEdge(from, to, 1.0);
+			following.computeIfAbsent(from, k -> new HashSet<>()).add(to);
+			following.computeIfAbsent(to, k -> new HashSet<>());
+
+			if (i % 25 == 0) {
+				for (int q = 0; q < 5; q++) {
+					String user = "u" + random.nextInt(USERS);
+					answers.merge(check(repository, following, user, limit), 1, Integer::sum);
+				}
+			}
+		}
+		return answers;
+	}
+
+	private CandidateIndex.Answer check(InMemoryGraphRepository repository, Map<String, Set<String>> following, String user, int limit) {
+		CsrGraph names = repository.snapshot().orElseThrow();
+		Map<String, double[]> visited = new HashMap<>();
+		CandidateIndex.Answer answer = repository.candidateIndex().visit(user, limit, (candidate, commonNeighbors, adamicAdar) ->
+			assertEquals(null, visited.put(names.userAt(candidate), new double[] {commonNeighbors, adamicAdar})));
+		if (answer == CandidateIndex.Answer.UNAVAILABLE) return answer;
+
+		Map<String, double[]> expected = traverse(following, user);
+		int minVisited = Integer.MAX_VALUE;
+		for (Map.Entry<String, double[]> entry : visited.entrySet()) {
+			double[] want = expected.get(entry.getKey());
+			assertNotEquals(null, want, user + " -> " + entry.getKey() + " is not a candidate");
+			assertEquals(want[0], entry.getValue()[0], user + " -> " + entry.getKey());
+			assertEquals(want[1], entry.getValue()[1], 1e-9, user + " -> " + entry.getKey());
+			minVisited = Math.min(minVisited, (int) entry.getValue()[0]);
+		}
+		if (answer == CandidateIndex.Answer.COMPLETE) {
+			assertEquals(expected.keySet(), visited.keySet(), user);
+		} else {
+			assertTrue(visited.size() >= limit, user);
+			for (Map.Entry<String, double[]> entry : expected.entrySet()) {
+				if (!visited.containsKey(entry.getKey())) {
+					assertTrue(entry.getValue()[0] <= minVisited, user + " left out " + entry.getKey());
+				}
+			}
+		}
+		return answer;
+	}
+
+	// Common-neighbour count and Adamic-Adar sum of every friend of a friend of user
+	private static Map<String, double[]> traverse(Map<String, Set<String>> following, String user) {
+		Set<String> friends = following.getOrDefault(user, Set.of());
+		Map<String, double[]> candidates = new HashMap<>();
+		for (String friend : friends) {
+			Set<String> next = following.get(friend);
+			double weight = next.size() <= 1 ? 0 : 1.0 / Math.log(next.size());
+			for (String candidate : next) {
+				if (candidate.equals(user) || friends.contains(candidate)) continue;
+				double[] score = candidates.computeIfAbsent(candidate, k -> new double[2]);
+				score[0]++;
+				score[1] += weight;
+			}
+		}
+		return candidates;
+	}
+
+	private Map<String, Object> stats() {
+		return repository.candidateIndex().getStats();
+	}
+}
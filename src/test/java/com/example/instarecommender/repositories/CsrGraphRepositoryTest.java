@@ -0,0 +1,124 @@
+package com.example.instarecommender.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+class CsrGraphRepositoryTest {
+
+	private CsrGraphRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		repository = new CsrGraphRepository(64, 5);
+	}
+
+	@AfterEach
+	void tearDown() {
+		repository.shutdown();
+	}
+
+	@Test
+	void publishedBaseDoesNotChangeUnderItsReader() {
+		repository.addOrUpdateEdge("a", "b", 2.0);
+		repository.addOrUpdateEdge("b", "a", 8.0);
+		CsrGraph before = repository.checkpoint();
+
+		repository.addOrUpdateEdge("a", "b", 4.0);
+		repository.applyGlobalDecay(0.5);
+		assertEquals(2.0, repository.getConnectionWeight("a", "b"), 1e-6);
+		assertEquals(4.0, repository.getConnectionWeight("b", "a"), 1e-6);
+		CsrGraph after = repository.checkpoint();
+
+		assertEquals(2.0, weight(before, "a", "b"), 1e-6);
+		assertEquals(8.0, weight(before, "b", "a"), 1e-6);
+		assertEquals(2.0, weight(after, "a", "b"), 1e-6);
+		assertEquals(4.0, weight(after, "b", "a"), 1e-6);
+	}
+
+	// Out and in rows of one base carry the same weights while writes, merges and decays run
+	@Test
+	void readersNeverSeeOutAndInRowsDisagree() throws InterruptedException {
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		Thread reader = new Thread(() -> {
+			try {
+				while (writing.get()) {
+					CsrGraph view = repository.snapshot().orElseThrow();
+					double out = 0;
+					double in = 0;
+					for (int v = 0; v < view.vertexCount(); v++) {
+						for (int i = view.outStart(v); i < view.outEnd(v); i++) {
+							out += view.outWeight(i);
+						}
+						for (int i = view.inStart(v); i < view.inEnd(v); i++) {
+							in += view.inWeight(i);
+						}
+					}
+					assertEquals(out, in, 1e-6 * Math.max(1, out));
+				}
+			} catch (Throwable t) {
+				failures.add(t);
+			}
+		});
+		reader.start();
+
+		Random random = new Random(1);
+		for (int i = 0; i < 20_000; i++) {
+			String from = "u" + random.nextInt(50);
+			String to = "u" + random.nextInt(50);
+			if (!from.equals(to)) repository.addOrUpdateEdge(from, to, 1 + random.nextInt(10));
+			if (i % 2_000 == 0) repository.applyGlobalDecay(0.9);
+		}
+		writing.set(false);
+		reader.join();
+		assertTrue(failures.isEmpty(), "reader failed: " + failures.peek());
+	}
+
+	// Chunk 1 arrives first but chunk 2 comes later in the file, so its row wins
+	@Test
+	void bulkImportResolvesRepeatsByChunk() {
+		BulkEdgeWriter writer = repository.openBulkWriter();
+		writer.write(batch(2, "a", "b", 5.0));
+		writer.write(batch(1, "a", "b", 3.0));
+		writer.write(batch(2, "a", "b", 7.0));
+		writer.close();
+		assertEquals(7.0, repository.getConnectionWeight("a", "b"), 1e-6);
+	}
+
+	@Test
+	void abortedBulkImportPublishesNoEdge() {
+		repository.addOrUpdateEdge("a", "b", 1.0);
+		BulkEdgeWriter writer = repository.openBulkWriter();
+		writer.write(batch(0, "a", "b", 9.0));
+		writer.write(batch(1, "b", "c", 9.0));
+		writer.abort();
+		writer.write(batch(2, "c", "a", 9.0));
+		writer.close();
+
+		CsrGraph graph = repository.checkpoint();
+		assertEquals(1, graph.edgeCount());
+		assertEquals(1.0, weight(graph, "a", "b"), 1e-6);
+		assertTrue(repository.getFollowing("b").isEmpty());
+	}
+
+	private static EdgeBatch batch(int chunk, String from, String to, double weight) {
+		EdgeBatch batch = new EdgeBatch(1, chunk);
+		batch.add(from, to, weight);
+		return batch;
+	}
+
+	private static double weight(CsrGraph graph, String from, String to) {
+		return graph.outWeight(graph.findEdge(graph.indexOf(from), graph.indexOf(to)));
+	}
+}
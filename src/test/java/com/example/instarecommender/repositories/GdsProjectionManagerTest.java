@@ -0,0 +1,130 @@
+package com.example.instarecommender.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GdsProjectionManagerTest {
+
+	private Driver driver;
+	private Session session;
+	private Result listResult;
+	private GdsProjectionManager manager;
+
+	@BeforeEach
+	void setUp() {
+		driver = mock(Driver.class);
+		session = mock(Session.class);
+		listResult = mock(Result.class);
+		when(driver.session()).thenReturn(session);
+		when(session.run(anyString())).thenReturn(listResult);
+		when(session.run(anyString(), anyMap())).thenReturn(mock(Result.class));
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (manager != null) manager.shutdown();
+	}
+
+	@Test
+	void firstCallBuildsVersionedProjection() {
+		manager = new GdsProjectionManager(driver, new SimpleMeterRegistry(), 60_000, 1000, 0);
+
+		assertEquals("social-graph-v1", manager.currentName());
+		assertEquals("social-graph-v1", manager.currentName());
+		verify(session, times(1)).run(contains("gds.graph.project"), anyMap());
+	}
+
+	@Test
+	void firstBuildDropsProjectionsLeftByPreviousRun() {
+		when(listResult.list(any())).thenReturn(List.of("social-graph", "social-graph-v7", "other-graph"));
+		manager = new GdsProjectionManager(driver, new SimpleMeterRegistry(), 60_000, 1000, 0);
+
+		manager.currentName();
+
+		verify(session).run(contains("gds.graph.drop"), eq(Map.of("name", "social-graph")));
+		verify(session).run(contains("gds.graph.drop"), eq(Map.of("name", "social-graph-v7")));
+		verify(session, never()).run(contains("gds.graph.drop"), eq(Map.of("name", "other-graph")));
+	}
+
+	@Test
+	void writesBelowThresholdWaitForInterval() throws InterruptedException {
+		manager = new GdsProjectionManager(driver, new SimpleMeterRegistry(), 60_000, 5, 0);
+		manager.currentName();
+
+		for (int i = 0; i < 4; i++) {
+			manager.markDirty();
+		}
+		Thread.sleep(200);
+
+		assertEquals("social-graph-v1", manager.currentName());
+		assertEquals(4, manager.getPendingMutations());
+		verify(session, times(1)).run(contains("gds.graph.project"), anyMap());
+	}
+
+	@Test
+	void reachingThresholdSwapsAndDropsOldProjection() {
+		manager = new GdsProjectionManager(driver, new SimpleMeterRegistry(), 60_000, 5, 0);
+		manager.currentName();
+
+		for (int i = 0; i < 5; i++) {
+			manager.markDirty();
+		}
+
+		verify(session, timeout(2000)).run(contains("gds.graph.project"), eq(Map.of("name", "social-graph-v2")));
+		verify(session, timeout(2000)).run(contains("gds.graph.drop"), eq(Map.of("name", "social-graph-v1")));
+		assertEquals("social-graph-v2", manager.currentName());
+		assertEquals(0, manager.getPendingMutations());
+	}
+
+	@Test
+	void burstOfWritesCausesSingleRebuildPerInterval() throws InterruptedException {
+		manager = new GdsProjectionManager(driver, new SimpleMeterRegistry(), 100, 1000, 0);
+		manager.currentName();
+
+		for (int i = 0; i < 50; i++) {
+			manager.markDirty();
+		}
+
+		verify(session, timeout(2000)).run(contains("gds.graph.project"), eq(Map.of("name", "social-graph-v2")));
+		Thread.sleep(300);
+		assertEquals(2, manager.getVersion());
+		assertEquals("social-graph-v2", manager.currentName());
+	}
+
+	@Test
+	void failedRebuildKeepsServingCurrentProjection() {
+		manager = new GdsProjectionManager(driver, new SimpleMeterRegistry(), 60_000, 1000, 0);
+		manager.currentName();
+		manager.markDirty(3);
+		when(session.run(contains("gds.graph.project"), anyMap())).thenThrow(new RuntimeException("out of memory"));
+
+		assertThrows(RuntimeException.class, manager::rebuild);
+
+		assertEquals("social-graph-v1", manager.currentName());
+		assertEquals(3, manager.getPendingMutations());
+		verify(session, never()).run(contains("gds.graph.drop"), anyMap());
+	}
+}
@@ -0,0 +1,185 @@
+package com.example.instarecommender.repositories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.csr.CsrGraph;
+
+class InMemoryGraphRepositoryConcurrencyTest {
+
+	private static final int WRITERS = 4;
+	private static final int READERS = 4;
+	private static final int WRITES_PER_WRITER = 20_000;
+	private static final int USERS_PER_WRITER = 60;
+
+	private InMemoryGraphRepository repository;
+
+	@BeforeEach
+	void setUp() {
+		repository = new InMemoryGraphRepository(1);
+	}
+
+	@AfterEach
+	void tearDown() {
+		repository.shutdown();
+	}
+
+	@Test
+	void writersAndReadersRunConcurrently() throws InterruptedException {
+		Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CountDownLatch writersDone = new CountDownLatch(WRITERS);
+		List<Map<String, Double>> expected = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+
+		for (int w = 0; w < WRITERS; w++) {
+			// Each writer owns its users, so its final weights only depend on its own order
+			Map<String, Double> model = new HashMap<>();
+			expected.add(model);
+			int writer = w;
+			threads.add(new Thread(() -> {
+				try {
+					write(writer, model);
+				} catch (Throwable t) {
+					failures.add(t);
+				} finally {
+					writersDone.countDown();
+				}
+			}));
+		}
+		for (int r = 0; r < READERS; r++) {
+			threads.add(new Thread(() -> {
+				try {
+					while (writing.get()) {
+						read();
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				}
+			}));
+		}
+
+		threads.forEach(Thread::start);
+		assertTrue(writersDone.await(60, TimeUnit.SECONDS), "writers did not finish");
+		writing.set(false);
+		for (Thread thread : threads) {
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		failures.forEach(Throwable::printStackTrace);
+		assertTrue(failures.isEmpty(), "concurrent access failed: " + failures.peek());
+
+		CsrGraph graph = repository.checkpoint();
+		int edges = 0;
+		for (Map<String, Double> model : expected) {
+			for (Map.Entry<String, Double> edge : model.entrySet()) {
+				String[] pair = edge.getKey().split(">");
+				int slot = graph.findEdge(graph.indexOf(pair[0]), graph.indexOf(pair[1]));
+				assertTrue(slot >= 0, "missing edge " + edge.getKey());
+				assertEquals(edge.getValue(), graph.outWeight(slot), 1e-3, edge.getKey());
+				edges++;
+			}
+		}
+		assertEquals(edges, graph.edgeCount());
+	}
+
+	@Test
+	void publishedViewDoesNotChangeUnderItsReader() {
+		repository.addOrUpdateEdge("a", "b", 2.0);
+		CsrGraph before = repository.checkpoint();
+
+		repository.addOrUpdateEdge("a", "b", 4.0);
+		repository.applyGlobalDecay(0.5);
+		repository.addOrUpdateEdge("a", "c", 1.0);
+		CsrGraph after = repository.checkpoint();
+
+		assertEquals(2.0, before.outWeight(before.findEdge(before.indexOf("a"), before.indexOf("b"))), 1e-6);
+		assertEquals(1, before.edgeCount());
+		assertEquals(2.0, after.outWeight(after.findEdge(after.indexOf("a"), after.indexOf("b"))), 1e-6);
+		assertEquals(2, after.edgeCount());
+	}
+
+	@Test
+	void weightOnlyChangesAndDecayAreApplied() {
+		repository.addOrUpdateEdge("a", "b", 2.0);
+		repository.addOrUpdateEdge("b", "a", 8.0);
+		CsrGraph first = repository.checkpoint();
+
+		repository.applyGlobalDecay(0.5);
+		repository.addOrUpdateEdge("a", "b", 3.0);
+		CsrGraph second = repository.checkpoint();
+
+		assertEquals(3.0, second.outWeight(second.findEdge(second.indexOf("a"), second.indexOf("b"))), 1e-6);
+		assertEquals(4.0, second.outWeight(second.findEdge(second.indexOf("b"), second.indexOf("a"))), 1e-6);
+		assertEquals(4.0, repository.getConnectionWeight("b", "a"), 1e-6);
+		assertEquals(8.0, first.outWeight(first.findEdge(first.indexOf("b"), first.indexOf("a"))), 1e-6);
+	}
+
+	private void write(int writer, Map<String, Double> model) {
+		Random random = new Random(writer);
+		for (int i = 0; i < WRITES_PER_WRITER; i++) {
+			String from = "w" + writer + "-" + random.nextInt(USERS_PER_WRITER);
+			String to = "w" + writer + "-" + random.nextInt(USERS_PER_WRITER);
+			if (from.equals(to)) continue;
+			String key = from + ">" + to;
+			switch (random.nextInt(4)) {
+				case 0 -> {
+					double weight = random.nextInt(100) / 10.0;
+					repository.addOrUpdateEdge(from, to, weight);
+					model.put(key, weight);
+				}
+				case 1 -> {
+					WeightUpdate update = WeightUpdate.identity(from, to).andThen(0.95, 1.0, 10.0);
+					repository.applyWeightUpdates(List.of(update));
+					model.put(key, update.apply(model.getOrDefault(key, 0.0)));
+				}
+				case 2 -> repository.addUser("w" + writer + "-solo-" + random.nextInt(USERS_PER_WRITER));
+				default -> repository.applyGlobalDecay(1.0);
+			}
+		}
+	}
+
+	private void read() {
+		CsrGraph view = repository.snapshot().orElseThrow();
+		double outSum = 0;
+		int outEdges = 0;
+		for (int v = 0; v < view.vertexCount(); v++) {
+			for (int i = view.outStart(v); i < view.outEnd(v); i++) {
+				outSum += view.outWeight(i);
+				outEdges++;
+			}
+		}
+		double inSum = 0;
+		int inEdges = 0;
+		for (int v = 0; v < view.vertexCount(); v++) {
+			for (int i = view.inStart(v); i < view.inEnd(v); i++) {
+				inSum += view.inWeight(i);
+				inEdges++;
+			}
+		}
+		assertEquals(outEdges, inEdges);
+		assertEquals(outSum, inSum, 1e-6 * Math.max(1, outSum));
+
+		// Point lookups on whatever view is current must not throw either
+		String user = view.vertexCount() == 0 ? "w0-0" : view.userAt(view.vertexCount() - 1);
+		repository.getFollowing(user);
+		repository.getFollowers(user);
+		repository.getConnectionWeight(user, "w0-1");
+		repository.getStorageStats();
+	}
+}
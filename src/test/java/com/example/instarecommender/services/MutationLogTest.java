@@ -0,0 +1,184 @@
+package com.example.instarecommender.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.instarecommender.models.WeightUpdate;
+import com.example.instarecommender.repositories.CsrGraphRepository;
+
+class MutationLogTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<CsrGraphRepository> repositories = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		repositories.forEach(CsrGraphRepository::shutdown);
+	}
+
+	@Test
+	void recordsAreFramedWithTheirLengthAndChecksum() throws Exception {
+		MutationLog log = open(0);
+		log.onEdgeUpdated("a", "b", 2.0);
+		log.onUserAdded("c");
+		log.close();
+
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment(1)));
+		int records = 0;
+		while (buffer.hasRemaining()) {
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			assertEquals((int) crc.getValue(), checksum);
+			records++;
+		}
+		assertEquals(2, records);
+	}
+
+	@Test
+	void replayAppliesEveryRecordInOrder() throws Exception {
+		MutationLog log = open(0);
+		log.onUserAdded("lonely");
+		log.onEdgeUpdated("a", "b", 2.0);
+		log.onEdgeUpdated("a", "c", 1.0);
+		log.onWeightsUpdated(List.of(new WeightUpdate("a", "b", 1.0, 0.5, 10.0)));
+		log.onGlobalDecay(0.5);
+		log.close();
+
+		CsrGraphRepository replayed = repository();
+		MutationLog reopened = new MutationLog(true, dir.toString(), "always", 100);
+		assertEquals(5, reopened.open(replayed, 0));
+		reopened.close();
+		assertEquals(1.25, replayed.getConnectionWeight("a", "b"), 1e-6);
+		assertEquals(0.5, replayed.getConnectionWeight("a", "c"), 1e-6);
+		assertTrue(replayed.getAllConnections().containsKey("lonely"));
+	}
+
+	@Test
+	void corruptRecordCutsTheSegmentBackAndSkipsLaterSegments() throws Exception {
+		MutationLog log = open(0);
+		log.onEdgeUpdated("a", "b", 1.0);
+		log.onEdgeUpdated("a", "c", 1.0);
+		log.rotate();
+		log.onEdgeUpdated("a", "d", 1.0);
+		log.close();
+
+		byte[] first = Files.readAllBytes(segment(1));
+		int goodBytes = 8 + ByteBuffer.wrap(first).getInt();
+		first[first.length - 1] ^= 1;
+		Files.write(segment(1), first);
+
+		CsrGraphRepository replayed = repository();
+		MutationLog reopened = new MutationLog(true, dir.toString(), "always", 100);
+		assertEquals(1, reopened.open(replayed, 0));
+		reopened.close();
+		assertEquals(1.0, replayed.getConnectionWeight("a", "b"), 1e-6);
+		assertEquals(0.0, replayed.getConnectionWeight("a", "c"));
+		assertEquals(0.0, replayed.getConnectionWeight("a", "d"));
+		assertEquals(goodBytes, Files.size(segment(1)));
+		assertFalse(Files.exists(segment(2)));
+		assertTrue(Files.exists(dir.resolve(segment(2).getFileName() + ".skipped")));
+	}
+
+	@Test
+	void tornTailIsCutBack() throws Exception {
+		MutationLog log = open(0);
+		log.onEdgeUpdated("a", "b", 1.0);
+		log.close();
+		byte[] complete = Files.readAllBytes(segment(1));
+		// A record header promising more bytes than were written before the crash
+		Files.write(segment(1), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+		CsrGraphRepository replayed = repository();
+		MutationLog reopened = new MutationLog(true, dir.toString(), "always", 100);
+		assertEquals(1, reopened.open(replayed, 0));
+		reopened.close();
+		assertArrayEquals(complete, Files.readAllBytes(segment(1)));
+		assertEquals(1.0, replayed.getConnectionWeight("a", "b"), 1e-6);
+	}
+
+	@Test
+	void rotateAndTruncateLeaveOnlyTheSegmentsAfterTheCheckpoint() throws Exception {
+		MutationLog log = open(0);
+		log.onEdgeUpdated("a", "b", 1.0);
+		long position = log.rotate();
+		assertEquals(2, position);
+		log.onEdgeUpdated("a", "c", 1.0);
+		log.truncateBefore(position);
+		log.close();
+		assertEquals(List.of(segment(2)), segments());
+
+		CsrGraphRepository replayed = repository();
+		MutationLog reopened = new MutationLog(true, dir.toString(), "always", 100);
+		assertEquals(1, reopened.open(replayed, position));
+		reopened.close();
+		assertEquals(0.0, replayed.getConnectionWeight("a", "b"));
+		assertEquals(1.0, replayed.getConnectionWeight("a", "c"), 1e-6);
+		// The reopened log continues after the replayed segment
+		assertEquals(List.of(segment(2), segment(3)), segments());
+	}
+
+	// Without the snapshot the truncated segments were meant for, the survivors must not be
+	// replayed on top of a graph loaded from somewhere else
+	@Test
+	void segmentsAfterAGapAreNotReplayed() throws Exception {
+		MutationLog log = open(0);
+		log.onEdgeUpdated("a", "b", 1.0);
+		long position = log.rotate();
+		log.onEdgeUpdated("a", "c", 1.0);
+		log.truncateBefore(position);
+		log.close();
+
+		CsrGraphRepository replayed = repository();
+		MutationLog reopened = new MutationLog(true, dir.toString(), "always", 100);
+		assertEquals(0, reopened.open(replayed, 0));
+		reopened.close();
+		assertEquals(0.0, replayed.getConnectionWeight("a", "c"));
+		assertTrue(Files.exists(dir.resolve(segment(2).getFileName() + ".skipped")));
+	}
+
+	private MutationLog open(long fromSegment) throws IOException {
+		MutationLog log = new MutationLog(true, dir.toString(), "always", 100);
+		log.open(repository(), fromSegment);
+		return log;
+	}
+
+	private CsrGraphRepository repository() {
+		CsrGraphRepository repository = new CsrGraphRepository(1_000_000, 60_000);
+		repositories.add(repository);
+		return repository;
+	}
+
+	private Path segment(long id) {
+		return dir.resolve(String.format("mutations-%06d.log", id));
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			Path[] found = files.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toArray(Path[]::new);
+			return Arrays.asList(found);
+		}
+	}
+}